@@ -0,0 +1,58 @@
+package org.wallentines.jwt;
+
+import org.wallentines.mdcfg.ConfigSection;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * A non-blocking source of keys, for key stores which must load or fetch keys. Used by
+ * {@link JWTReader#readAnyAsync(String, AsyncKeySupplier)}.
+ */
+public interface AsyncKeySupplier {
+
+    /**
+     * The default executor for blocking key lookups and for reading tokens. Each task runs on its own virtual thread.
+     */
+    Executor DEFAULT_EXECUTOR = Executors.newVirtualThreadPerTaskExecutor()::execute;
+
+    /**
+     * Finds a key for a token.
+     * @param joseHeader The token's JOSE header.
+     * @param type The type of key to find.
+     * @return A future which completes with the key, or with null if there is no such key.
+     */
+    <T> CompletableFuture<T> getKeyAsync(ConfigSection joseHeader, KeyType<T> type);
+
+    static AsyncKeySupplier of(KeySupplier supplier) {
+        return of(supplier, DEFAULT_EXECUTOR);
+    }
+
+    /**
+     * Adapts a blocking key supplier. Lookups run on the given executor, and concurrent lookups for the same key share
+     * one call to the supplier.
+     * @param supplier The key supplier to adapt.
+     * @param executor The executor to look up keys on.
+     * @return A non-blocking key supplier.
+     */
+    static AsyncKeySupplier of(KeySupplier supplier, Executor executor) {
+        return shared(new AsyncKeySupplier() {
+            @Override
+            public <T> CompletableFuture<T> getKeyAsync(ConfigSection joseHeader, KeyType<T> type) {
+                return CompletableFuture.supplyAsync(() -> supplier.getKey(joseHeader, type), executor);
+            }
+        });
+    }
+
+    /**
+     * Wraps a key supplier so that a key which is already being looked up is not looked up again. Callers asking for
+     * it in the meantime receive the same result. Finished lookups are not remembered.
+     * @param supplier The key supplier to wrap.
+     * @return A key supplier which shares in-flight lookups.
+     */
+    static AsyncKeySupplier shared(AsyncKeySupplier supplier) {
+        return new SharedAsyncKeySupplier(supplier);
+    }
+
+}
@@ -0,0 +1,217 @@
+package org.wallentines.jwt;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A UsedTokenStore which trades a small chance of rejecting a fresh token for fixed memory use. IDs are recorded in
+ * Bloom filters, one generation per window of expiry times, and each generation is dropped as a whole once every token
+ * in its window has expired. Optionally, the newest generation also keeps an exact set of its IDs, so tokens in that
+ * window are never falsely rejected.
+ */
+public class BloomUsedTokenStore implements UsedTokenStore {
+
+    private static final VarHandle BITS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final int STRIPES = 64;
+
+    private final long windowSeconds;
+    private final int expectedInsertions;
+    private final double falsePositiveRate;
+    private final boolean exactNewest;
+    private final long bitCount;
+    private final int hashCount;
+
+    private final Map<Long, Generation> generations = new ConcurrentHashMap<>();
+    private final Object[] stripes = new Object[STRIPES];
+    private volatile long newest = Long.MIN_VALUE;
+
+    /**
+     * Creates a store without an exact set.
+     * @param expectedInsertions The number of IDs expected to expire within a single window.
+     * @param falsePositiveRate The chance that a fresh ID will be reported as used, when a window holds the expected
+     *                          number of IDs.
+     * @param window The span of expiry times covered by each generation.
+     */
+    public BloomUsedTokenStore(int expectedInsertions, double falsePositiveRate, Duration window) {
+        this(expectedInsertions, falsePositiveRate, window, false);
+    }
+
+    /**
+     * Creates a store.
+     * @param expectedInsertions The number of IDs expected to expire within a single window.
+     * @param falsePositiveRate The chance that a fresh ID will be reported as used, when a window holds the expected
+     *                          number of IDs.
+     * @param window The span of expiry times covered by each generation.
+     * @param exactNewest Whether to also keep an exact set of the IDs in the newest generation.
+     */
+    public BloomUsedTokenStore(int expectedInsertions, double falsePositiveRate, Duration window, boolean exactNewest) {
+
+        if(expectedInsertions <= 0) {
+            throw new IllegalArgumentException("Expected insertions must be positive!");
+        }
+        if(!(falsePositiveRate > 0.0 && falsePositiveRate < 1.0)) {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1!");
+        }
+        if(window.getSeconds() <= 0) {
+            throw new IllegalArgumentException("Window must be at least one second!");
+        }
+
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+        this.windowSeconds = window.getSeconds();
+        this.exactNewest = exactNewest;
+
+        double ln2 = Math.log(2);
+        long bits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (ln2 * ln2));
+        this.bitCount = Math.max(64, (bits + 63) & ~63L);
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * ln2));
+
+        for(int i = 0 ; i < STRIPES ; i++) {
+            stripes[i] = new Object();
+        }
+    }
+
+    @Override
+    public boolean markUsed(UUID id, long expiresAt) {
+
+        long most = id.getMostSignificantBits();
+        long least = id.getLeastSignificantBits();
+        long h1 = mix(most ^ least * 0x9E3779B97F4A7C15L);
+        long h2 = mix(least ^ most * 0xC2B2AE3D27D4EB4FL) | 1;
+
+        Generation generation = getGeneration(Math.floorDiv(expiresAt, windowSeconds));
+
+        // IDs which land in the same stripe are serialized, so two copies of one token cannot both be accepted.
+        synchronized (stripes[(int) (h1 >>> 58)]) {
+            Set<UUID> exact = generation.exact;
+            boolean added = generation.add(h1, h2);
+            if(exact != null) {
+                added = exact.add(id);
+            }
+            if(added) {
+                generation.count.incrementAndGet();
+            }
+            return added;
+        }
+    }
+
+    @Override
+    public void purge(long now) {
+        // Compared by index, since the end of the last generation would overflow
+        long current = Math.floorDiv(now, windowSeconds);
+        generations.values().removeIf(gen -> gen.index < current);
+    }
+
+    /**
+     * Gets the approximate number of IDs recorded in all live generations.
+     * @return The number of IDs.
+     */
+    @Override
+    public int size() {
+        long out = 0;
+        for(Generation gen : generations.values()) {
+            out += gen.count.get();
+        }
+        return (int) Math.min(Integer.MAX_VALUE, out);
+    }
+
+    public double getFalsePositiveRate() {
+        return falsePositiveRate;
+    }
+
+    public int getExpectedInsertions() {
+        return expectedInsertions;
+    }
+
+    public Duration getWindow() {
+        return Duration.ofSeconds(windowSeconds);
+    }
+
+    public long getBitsPerGeneration() {
+        return bitCount;
+    }
+
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    public int getGenerationCount() {
+        return generations.size();
+    }
+
+    /**
+     * Gets the number of bytes used by the Bloom filters of all live generations. This does not include the exact set
+     * of the newest generation, if there is one.
+     * @return The memory used, in bytes.
+     */
+    public long getMemoryUsage() {
+        return (long) generations.size() * (bitCount / 8);
+    }
+
+    private Generation getGeneration(long index) {
+
+        Generation out = generations.get(index);
+        if(out != null) {
+            return out;
+        }
+
+        out = generations.computeIfAbsent(index, Generation::new);
+        if(exactNewest && index > newest) {
+            synchronized (generations) {
+                if(index > newest) {
+                    newest = index;
+                    for(Generation gen : generations.values()) {
+                        if(gen.index < index) {
+                            gen.exact = null;
+                        }
+                    }
+                }
+            }
+        }
+        return out;
+    }
+
+    private static long mix(long value) {
+        value = (value ^ (value >>> 33)) * 0xFF51AFD7ED558CCDL;
+        value = (value ^ (value >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return value ^ (value >>> 33);
+    }
+
+    private class Generation {
+
+        final long index;
+        final long[] bits = new long[(int) (bitCount >>> 6)];
+        final AtomicInteger count = new AtomicInteger();
+        volatile Set<UUID> exact;
+
+        Generation(long index) {
+            this.index = index;
+            if(exactNewest && index >= newest) {
+                exact = ConcurrentHashMap.newKeySet();
+            }
+        }
+
+        // Sets the bits for an ID, and returns whether any of them were unset
+        boolean add(long h1, long h2) {
+            boolean added = false;
+            long hash = h1;
+            for(int i = 0 ; i < hashCount ; i++) {
+                long bit = Long.remainderUnsigned(hash, bitCount);
+                long mask = 1L << bit;
+                long old = (long) BITS.getAndBitwiseOr(bits, (int) (bit >>> 6), mask);
+                if((old & mask) == 0) {
+                    added = true;
+                }
+                hash += h2;
+            }
+            return added;
+        }
+    }
+
+}
@@ -0,0 +1,17 @@
+package org.wallentines.jwt;
+
+/**
+ * A snapshot of the hit, miss, and eviction counts of a cache.
+ */
+public record CacheStats(long hits, long misses, long evictions) {
+
+    public long requests() {
+        return hits + misses;
+    }
+
+    public double hitRate() {
+        long requests = requests();
+        return requests == 0 ? 1.0 : (double) hits / requests;
+    }
+
+}
@@ -0,0 +1,417 @@
+package org.wallentines.jwt;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A size-bounded cache in front of another KeyStore. Eviction follows W-TinyLFU: new keys enter a small LRU window,
+ * and a key leaving the window only displaces a key in the main area if it has been requested more often recently, as
+ * estimated by a count-min sketch. This keeps the keys of busy tenants cached while a scan over rarely used keys passes
+ * through. Keys which have not been requested for the idle timeout, if one is set, are also dropped. The cache is split
+ * into independently locked segments, so it can be shared by many threads.
+ * <br/>
+ * Missing keys are not cached. Changes made through this store are passed to the underlying store, and the affected
+ * key is dropped from the cache. A key which was being loaded while it was invalidated is not cached.
+ * <br/>
+ * The cache only bounds memory if the underlying store does not also keep every key it loads. A {@link FileKeyStore}
+ * should be created without retaining keys when it is wrapped. The cache listens to a wrapped FileKeyStore, so keys
+ * which change on disk while it is being watched are dropped from the cache. Other stores which change on their own
+ * must call {@link #invalidate(String, KeyType)}, or the cache should be given an idle timeout.
+ */
+public class CachingKeyStore implements KeyStore {
+
+    private static final int MAX_SEGMENTS = 16;
+
+    private final KeyStore delegate;
+    private final Clock clock;
+    private final long idleTimeout;
+    private final Segment[] segments;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public CachingKeyStore(KeyStore delegate, int maxSize) {
+        this(delegate, maxSize, null, Clock.systemUTC());
+    }
+
+    public CachingKeyStore(KeyStore delegate, int maxSize, Duration idleTimeout) {
+        this(delegate, maxSize, idleTimeout, Clock.systemUTC());
+    }
+
+    /**
+     * Creates a cache in front of the given key store.
+     * @param delegate The key store to load keys from.
+     * @param maxSize The maximum number of keys to cache.
+     * @param idleTimeout How long a key may go without being requested before it is dropped, or null to keep keys
+     *                    until they are evicted.
+     * @param clock The clock used to measure idle time.
+     */
+    public CachingKeyStore(KeyStore delegate, int maxSize, Duration idleTimeout, Clock clock) {
+        if(maxSize < 1) {
+            throw new IllegalArgumentException("Cache size must be positive!");
+        }
+        this.delegate = delegate;
+        this.clock = clock;
+        this.idleTimeout = idleTimeout == null ? Long.MAX_VALUE : idleTimeout.toMillis();
+
+        int segmentCount = Math.min(MAX_SEGMENTS, Integer.highestOneBit(Math.max(1, maxSize / 64)));
+        int segmentSize = (maxSize + segmentCount - 1) / segmentCount;
+
+        this.segments = new Segment[segmentCount];
+        for(int i = 0 ; i < segmentCount ; i++) {
+            segments[i] = new Segment(segmentSize);
+        }
+
+        if(delegate instanceof FileKeyStore files) {
+            files.addListener(new FileKeyStore.Listener() {
+                @Override
+                public void onKeyChanged(String kid, KeyType<?> type) {
+                    invalidate(kid, type);
+                }
+
+                @Override
+                public void onAllKeysChanged() {
+                    clear();
+                }
+            });
+        }
+    }
+
+    public KeyStore getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T getKey(String name, KeyType<T> type) {
+
+        LookupKey key = new LookupKey(type, name);
+        Segment segment = segment(key);
+        long now = clock.millis();
+
+        Object cached;
+        long invalidations;
+        synchronized (segment) {
+            cached = segment.get(key, now);
+            invalidations = segment.invalidations;
+        }
+        if(cached != null) {
+            hits.increment();
+            return (T) cached;
+        }
+
+        misses.increment();
+        T out = delegate.getKey(name, type);
+        if(out != null) {
+            // Don't cache a key which was changed while it was being loaded
+            synchronized (segment) {
+                if(segment.invalidations == invalidations) {
+                    segment.put(key, out, now);
+                }
+            }
+        }
+        return out;
+    }
+
+    @Override
+    public <T> void setKey(String name, KeyType<T> type, T key) {
+        delegate.setKey(name, type, key);
+        invalidate(name, type);
+    }
+
+    @Override
+    public <T> void clearKey(String name, KeyType<T> type) {
+        delegate.clearKey(name, type);
+        invalidate(name, type);
+    }
+
+    public void invalidate(String name, KeyType<?> type) {
+        LookupKey key = new LookupKey(type, name);
+        Segment segment = segment(key);
+        synchronized (segment) {
+            segment.remove(key);
+            segment.invalidations++;
+        }
+    }
+
+    public void clear() {
+        for(Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+                segment.invalidations++;
+            }
+        }
+    }
+
+    public int size() {
+        int out = 0;
+        for(Segment segment : segments) {
+            synchronized (segment) {
+                out += segment.nodes.size();
+            }
+        }
+        return out;
+    }
+
+    public CacheStats getStats() {
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum());
+    }
+
+    private Segment segment(LookupKey key) {
+        return segments[spread(key.hashCode()) & (segments.length - 1)];
+    }
+
+    private static int spread(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x45D9F3B;
+        return hash ^ (hash >>> 16);
+    }
+
+    private record LookupKey(KeyType<?> type, String name) { }
+
+    private static class Node {
+
+        final LookupKey key;
+        final Object value;
+        long lastAccess;
+        Queue queue;
+        Node prev;
+        Node next;
+
+        Node(LookupKey key, Object value, long lastAccess) {
+            this.key = key;
+            this.value = value;
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    // A doubly linked list ordered from least to most recently used
+    private static class Queue {
+
+        private Node head;
+        private Node tail;
+        int size;
+
+        void addLast(Node node) {
+            node.queue = this;
+            node.prev = tail;
+            node.next = null;
+            if(tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+            size++;
+        }
+
+        void remove(Node node) {
+            if(node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if(node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+            node.queue = null;
+            size--;
+        }
+
+        void moveToLast(Node node) {
+            remove(node);
+            addLast(node);
+        }
+
+        Node first() {
+            return head;
+        }
+
+        void clear() {
+            head = null;
+            tail = null;
+            size = 0;
+        }
+    }
+
+    private class Segment {
+
+        private final Map<LookupKey, Node> nodes = new HashMap<>();
+        private final FrequencySketch sketch;
+        private final Queue window = new Queue();
+        private final Queue probation = new Queue();
+        private final Queue protectedQueue = new Queue();
+        private final int maxWindow;
+        private final int maxMain;
+        private final int maxProtected;
+        long invalidations;
+
+        Segment(int capacity) {
+            this.maxWindow = Math.max(1, capacity / 100);
+            this.maxMain = Math.max(0, capacity - maxWindow);
+            this.maxProtected = maxMain * 4 / 5;
+            this.sketch = new FrequencySketch(capacity);
+        }
+
+        Object get(LookupKey key, long now) {
+
+            int hash = spread(key.hashCode());
+            sketch.increment(hash);
+
+            Node node = nodes.get(key);
+            if(node == null) {
+                return null;
+            }
+            if(now - node.lastAccess >= idleTimeout) {
+                remove(node);
+                evictions.increment();
+                return null;
+            }
+
+            node.lastAccess = now;
+            if(node.queue == probation) {
+                probation.remove(node);
+                protectedQueue.addLast(node);
+                if(protectedQueue.size > maxProtected) {
+                    Node demoted = protectedQueue.first();
+                    protectedQueue.remove(demoted);
+                    probation.addLast(demoted);
+                }
+            } else {
+                node.queue.moveToLast(node);
+            }
+            return node.value;
+        }
+
+        void put(LookupKey key, Object value, long now) {
+
+            Node existing = nodes.get(key);
+            if(existing != null) {
+                remove(existing);
+            }
+
+            expireIdle(now);
+
+            Node node = new Node(key, value, now);
+            nodes.put(key, node);
+            window.addLast(node);
+            if(window.size <= maxWindow) {
+                return;
+            }
+
+            // The window is full, so its oldest entry competes for a place in the main area
+            Node candidate = window.first();
+            window.remove(candidate);
+            probation.addLast(candidate);
+            if(probation.size + protectedQueue.size <= maxMain) {
+                return;
+            }
+
+            Node victim = probation.first();
+            if(victim == candidate) {
+                victim = protectedQueue.first() != null ? protectedQueue.first() : candidate;
+            }
+            if(victim != candidate && sketch.frequency(spread(candidate.key.hashCode())) > sketch.frequency(spread(victim.key.hashCode()))) {
+                remove(victim);
+            } else {
+                remove(candidate);
+            }
+            evictions.increment();
+        }
+
+        void remove(LookupKey key) {
+            Node node = nodes.get(key);
+            if(node != null) {
+                remove(node);
+            }
+        }
+
+        void clear() {
+            nodes.clear();
+            window.clear();
+            probation.clear();
+            protectedQueue.clear();
+        }
+
+        private void remove(Node node) {
+            nodes.remove(node.key);
+            node.queue.remove(node);
+        }
+
+        // The least recently used entry of each queue is also the one which has been idle the longest
+        private void expireIdle(long now) {
+            if(idleTimeout == Long.MAX_VALUE) {
+                return;
+            }
+            for(Queue queue : new Queue[] { window, probation, protectedQueue }) {
+                Node node;
+                while((node = queue.first()) != null && now - node.lastAccess >= idleTimeout) {
+                    remove(node);
+                    evictions.increment();
+                }
+            }
+        }
+    }
+
+    // A count-min sketch of 4-bit counters, halved periodically so that old popularity fades
+    private static class FrequencySketch {
+
+        private static final long[] SEEDS = { 0xC3A5C85C97CB3127L, 0xB492B66FBE98F273L, 0x9AE16A3B2F90404FL, 0xCBF29CE484222325L };
+        private static final long RESET_MASK = 0x7777777777777777L;
+
+        private final long[] table;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int capacity) {
+            int size = Integer.highestOneBit(Math.max(8, capacity - 1)) << 1;
+            this.table = new long[size];
+            this.mask = size - 1;
+            this.sampleSize = Math.max(16, capacity * 10);
+        }
+
+        void increment(int hash) {
+            boolean added = false;
+            for(int i = 0 ; i < 4 ; i++) {
+                int counter = counter(hash, i);
+                int index = counter >>> 4;
+                int shift = (counter & 15) << 2;
+                if(((table[index] >>> shift) & 15) < 15) {
+                    table[index] += 1L << shift;
+                    added = true;
+                }
+            }
+            if(added && ++additions >= sampleSize) {
+                for(int i = 0 ; i < table.length ; i++) {
+                    table[i] = (table[i] >>> 1) & RESET_MASK;
+                }
+                additions /= 2;
+            }
+        }
+
+        int frequency(int hash) {
+            int out = 15;
+            for(int i = 0 ; i < 4 ; i++) {
+                int counter = counter(hash, i);
+                out = Math.min(out, (int) ((table[counter >>> 4] >>> ((counter & 15) << 2)) & 15));
+            }
+            return out;
+        }
+
+        // Selects one of the 16 counters in one of the table's longs, for the given row
+        private int counter(int hash, int row) {
+            long h = (hash + SEEDS[row]) * SEEDS[row];
+            h += h >>> 32;
+            return (int) h & ((mask << 4) | 15);
+        }
+    }
+
+}
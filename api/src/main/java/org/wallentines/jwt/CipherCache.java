@@ -0,0 +1,48 @@
+package org.wallentines.jwt;
+
+import javax.crypto.Cipher;
+import java.security.GeneralSecurityException;
+
+/**
+ * Caches Cipher instances for a single transformation, so encryption and decryption do not need to look up a provider
+ * for every token. Cached ciphers are always re-initialized before use. Caching can be turned off globally with
+ * {@link #setEnabled(boolean)}, or by setting the system property {@code jwtutil.cipherCache} to {@code false}.
+ */
+public class CipherCache {
+
+    private static volatile boolean enabled = Boolean.parseBoolean(System.getProperty("jwtutil.cipherCache", "true"));
+
+    private final String transformation;
+    private final InstancePool<Cipher> pool = new InstancePool<>();
+
+    public CipherCache(String transformation) {
+        this.transformation = transformation;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        CipherCache.enabled = enabled;
+    }
+
+    public String getTransformation() {
+        return transformation;
+    }
+
+    public Cipher acquire() throws GeneralSecurityException {
+        Cipher out = enabled ? pool.take() : null;
+        if(out == null) {
+            out = Cipher.getInstance(transformation);
+        }
+        return out;
+    }
+
+    public void release(Cipher cipher) {
+        if(enabled) {
+            pool.release(cipher);
+        }
+    }
+
+}
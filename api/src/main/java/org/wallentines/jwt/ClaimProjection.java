@@ -0,0 +1,408 @@
+package org.wallentines.jwt;
+
+import org.wallentines.mdcfg.ConfigObject;
+import org.wallentines.mdcfg.ConfigSection;
+import org.wallentines.mdcfg.codec.JSONCodec;
+import org.wallentines.mdcfg.serializer.ConfigContext;
+import org.wallentines.mdcfg.serializer.SerializeResult;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * A set of payload claims which a reader should decode up front. The payload is scanned once, and only the values of
+ * the declared claims are parsed. Other values are checked to be well-formed, but not decoded. Any other claim, or the
+ * full payload, is parsed the first time it is requested.
+ * Projections are immutable, and should be created once and reused.
+ */
+public class ClaimProjection {
+
+    private static final byte[][] KEYWORDS = {
+            "true".getBytes(StandardCharsets.US_ASCII),
+            "false".getBytes(StandardCharsets.US_ASCII),
+            "null".getBytes(StandardCharsets.US_ASCII)
+    };
+
+    private final Set<String> claims;
+    private final byte[][] encodedClaims;
+
+    private ClaimProjection(Set<String> claims) {
+        this.claims = claims;
+        this.encodedClaims = new byte[claims.size()][];
+
+        int index = 0;
+        for(String claim : claims) {
+            encodedClaims[index++] = claim.getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    public static ClaimProjection of(String... claims) {
+        return new ClaimProjection(Set.of(claims));
+    }
+
+    public static ClaimProjection of(Set<String> claims) {
+        return new ClaimProjection(Set.copyOf(claims));
+    }
+
+    public Set<String> getClaims() {
+        return claims;
+    }
+
+    public boolean contains(String claim) {
+        return claims.contains(claim);
+    }
+
+    public SerializeResult<JWT> project(ConfigSection header, byte[] payload, boolean encrypted, boolean unprotected, Function<ConfigSection, JWT> complete) {
+
+        ByteArrayOutputStream selected = new ByteArrayOutputStream();
+        selected.write('{');
+        try {
+            new Scanner(payload).scan(selected);
+        } catch (IllegalStateException ex) {
+            return SerializeResult.failure("Unable to scan token payload! " + ex.getMessage());
+        }
+        selected.write('}');
+
+        ConfigSection claims;
+        try {
+            claims = JSONCodec.minified().decode(ConfigContext.INSTANCE, new ByteArrayInputStream(selected.toByteArray()), StandardCharsets.UTF_8).asSection();
+        } catch (Exception ex) {
+            return SerializeResult.failure("Unable to parse token claims!");
+        }
+
+        return SerializeResult.success(new ProjectedJWT(this, header, claims, payload, encrypted, unprotected, complete));
+    }
+
+    private boolean matches(byte[] json, int start, int end) {
+        for(byte[] claim : encodedClaims) {
+            if(claim.length == end - start && Arrays.equals(claim, 0, claim.length, json, start, end)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * A token whose payload has only been partially parsed.
+     */
+    public static class ProjectedJWT implements JWT {
+
+        private final ClaimProjection projection;
+        private final ConfigSection header;
+        private final ConfigSection claims;
+        private final byte[] payloadBytes;
+        private final boolean encrypted;
+        private final boolean unprotected;
+        private final Function<ConfigSection, JWT> complete;
+        private volatile JWT full;
+
+        private ProjectedJWT(ClaimProjection projection, ConfigSection header, ConfigSection claims, byte[] payloadBytes, boolean encrypted, boolean unprotected, Function<ConfigSection, JWT> complete) {
+            this.projection = projection;
+            this.header = header;
+            this.claims = claims;
+            this.payloadBytes = payloadBytes;
+            this.encrypted = encrypted;
+            this.unprotected = unprotected;
+            this.complete = complete;
+        }
+
+        @Override
+        public ConfigSection header() {
+            return header;
+        }
+
+        @Override
+        public ConfigSection payload() {
+            return full().payload();
+        }
+
+        @Override
+        public ConfigObject getClaim(String claim) {
+            if(projection.contains(claim)) {
+                return claims.get(claim);
+            }
+            return full().getClaim(claim);
+        }
+
+        public boolean isFullyParsed() {
+            return full != null;
+        }
+
+        @Override
+        public SerializeResult<String> asString() {
+            return full().asString();
+        }
+
+        @Override
+        public boolean isEncrypted() {
+            return encrypted;
+        }
+
+        @Override
+        public boolean isUnprotected() {
+            return unprotected;
+        }
+
+        private JWT full() {
+            JWT out = full;
+            if(out == null) {
+                ConfigSection payload;
+                try {
+                    payload = JSONCodec.minified().decode(ConfigContext.INSTANCE, new ByteArrayInputStream(payloadBytes), StandardCharsets.UTF_8).asSection();
+                } catch (Exception ex) {
+                    throw new IllegalStateException("Unable to parse token payload!", ex);
+                }
+                out = complete.apply(payload);
+                full = out;
+            }
+            return out;
+        }
+    }
+
+
+    // Walks the top level of a JSON object, copying the entries for projected claims and skipping everything else
+    private class Scanner {
+
+        private final byte[] json;
+        private int pos;
+        private byte[] closers = new byte[16];
+
+        Scanner(byte[] json) {
+            this.json = json;
+        }
+
+        void scan(ByteArrayOutputStream out) {
+
+            boolean first = true;
+            skipWhitespace();
+            expect('{');
+            skipWhitespace();
+            if(peek() == '}') {
+                pos++;
+            } else {
+                while(true) {
+                    int keyStart = pos;
+                    skipString();
+                    int keyEnd = pos;
+
+                    skipWhitespace();
+                    expect(':');
+                    skipWhitespace();
+
+                    int valueStart = pos;
+                    skipValue();
+                    int valueEnd = pos;
+
+                    if(isProjected(keyStart + 1, keyEnd - 1)) {
+                        if(!first) out.write(',');
+                        out.write(json, keyStart, keyEnd - keyStart);
+                        out.write(':');
+                        out.write(json, valueStart, valueEnd - valueStart);
+                        first = false;
+                    }
+
+                    skipWhitespace();
+                    byte next = next();
+                    if(next == '}') break;
+                    if(next != ',') throw new IllegalStateException("Expected , or } at " + (pos - 1));
+                    skipWhitespace();
+                }
+            }
+
+            skipWhitespace();
+            if(pos != json.length) {
+                throw new IllegalStateException("Unexpected data after payload at " + pos);
+            }
+        }
+
+        private boolean isProjected(int start, int end) {
+            for(int i = start ; i < end ; i++) {
+                if(json[i] == '\\') {
+                    return contains(unescape(start, end));
+                }
+            }
+            return matches(json, start, end);
+        }
+
+        private byte peek() {
+            if(pos >= json.length) throw new IllegalStateException("Unexpected end of payload");
+            return json[pos];
+        }
+
+        private byte next() {
+            byte out = peek();
+            pos++;
+            return out;
+        }
+
+        private void expect(char c) {
+            if(next() != c) throw new IllegalStateException("Expected " + c + " at " + (pos - 1));
+        }
+
+        private void skipWhitespace() {
+            while(pos < json.length && (json[pos] == ' ' || json[pos] == '\t' || json[pos] == '\n' || json[pos] == '\r')) {
+                pos++;
+            }
+        }
+
+        // Control characters must be escaped, and only the escapes defined by JSON are accepted
+        private void skipString() {
+            expect('"');
+            while(true) {
+                byte b = next();
+                if(b == '"') return;
+                if(b >= 0 && b < 0x20) throw new IllegalStateException("Unescaped control character at " + (pos - 1));
+                if(b != '\\') continue;
+
+                byte escape = next();
+                switch (escape) {
+                    case '"', '\\', '/', 'b', 'f', 'n', 'r', 't' -> { }
+                    case 'u' -> {
+                        for(int i = 0 ; i < 4 ; i++) {
+                            if(Character.digit(next(), 16) == -1) throw new IllegalStateException("Invalid unicode escape at " + (pos - 1));
+                        }
+                    }
+                    default -> throw new IllegalStateException("Invalid escape at " + (pos - 1));
+                }
+            }
+        }
+
+        // Values of claims which are not projected are still checked, so a payload is only accepted here if the full
+        // parser would accept it too. Nesting is tracked with an explicit stack of closing brackets rather than by
+        // recursion, so deeply nested payloads cannot overflow the call stack.
+        private void skipValue() {
+            int depth = 0;
+            while(true) {
+                byte b = peek();
+                boolean complete = true;
+                if(b == '"') {
+                    skipString();
+                } else if(b == '{' || b == '[') {
+                    pos++;
+                    if(depth == closers.length) {
+                        closers = Arrays.copyOf(closers, depth * 2);
+                    }
+                    byte closer = b == '{' ? (byte) '}' : (byte) ']';
+                    closers[depth++] = closer;
+                    skipWhitespace();
+                    if(peek() == closer) {
+                        pos++;
+                        depth--;
+                    } else {
+                        if(closer == '}') skipMemberName();
+                        complete = false;
+                    }
+                } else {
+                    skipLiteral();
+                }
+
+                // After a value, close any containers which end here, then move on to the next value
+                while(complete) {
+                    if(depth == 0) return;
+                    skipWhitespace();
+                    byte next = next();
+                    if(next == closers[depth - 1]) {
+                        depth--;
+                        continue;
+                    }
+                    if(next != ',') throw new IllegalStateException("Expected , or " + (char) closers[depth - 1] + " at " + (pos - 1));
+                    skipWhitespace();
+                    if(closers[depth - 1] == '}') skipMemberName();
+                    complete = false;
+                }
+            }
+        }
+
+        private void skipMemberName() {
+            skipString();
+            skipWhitespace();
+            expect(':');
+            skipWhitespace();
+        }
+
+        private void skipLiteral() {
+            int start = pos;
+            while(pos < json.length && json[pos] != ',' && json[pos] != '}' && json[pos] != ']'
+                    && json[pos] != ' ' && json[pos] != '\t' && json[pos] != '\n' && json[pos] != '\r') {
+                pos++;
+            }
+            if(!isLiteral(start, pos)) throw new IllegalStateException("Expected a value at " + start);
+        }
+
+        private boolean isLiteral(int start, int end) {
+            for(byte[] keyword : KEYWORDS) {
+                if(Arrays.equals(keyword, 0, keyword.length, json, start, end)) {
+                    return true;
+                }
+            }
+
+            // -?(0|[1-9][0-9]*)(.[0-9]+)?([eE][+-]?[0-9]+)?
+            int i = start;
+            if(i < end && json[i] == '-') i++;
+            if(i < end && json[i] == '0') {
+                i++;
+            } else {
+                int digits = skipDigits(i, end);
+                if(digits == i) return false;
+                i = digits;
+            }
+            if(i < end && json[i] == '.') {
+                int digits = skipDigits(i + 1, end);
+                if(digits == i + 1) return false;
+                i = digits;
+            }
+            if(i < end && (json[i] == 'e' || json[i] == 'E')) {
+                i++;
+                if(i < end && (json[i] == '+' || json[i] == '-')) i++;
+                int digits = skipDigits(i, end);
+                if(digits == i) return false;
+                i = digits;
+            }
+            return i == end;
+        }
+
+        private int skipDigits(int start, int end) {
+            while(start < end && json[start] >= '0' && json[start] <= '9') {
+                start++;
+            }
+            return start;
+        }
+
+        private String unescape(int start, int end) {
+            StringBuilder out = new StringBuilder();
+            String raw = new String(json, start, end - start, StandardCharsets.UTF_8);
+            for(int i = 0 ; i < raw.length() ; i++) {
+                char c = raw.charAt(i);
+                if(c != '\\' || i + 1 == raw.length()) {
+                    out.append(c);
+                    continue;
+                }
+                char e = raw.charAt(++i);
+                switch (e) {
+                    case 'b' -> out.append('\b');
+                    case 'f' -> out.append('\f');
+                    case 'n' -> out.append('\n');
+                    case 'r' -> out.append('\r');
+                    case 't' -> out.append('\t');
+                    case 'u' -> {
+                        if(i + 4 >= raw.length()) throw new IllegalStateException("Invalid unicode escape");
+                        try {
+                            out.append((char) Integer.parseInt(raw.substring(i + 1, i + 5), 16));
+                        } catch (NumberFormatException ex) {
+                            throw new IllegalStateException("Invalid unicode escape");
+                        }
+                        i += 4;
+                    }
+                    default -> out.append(e);
+                }
+            }
+            return out.toString();
+        }
+    }
+
+}
@@ -0,0 +1,221 @@
+package org.wallentines.jwt;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * A UsedTokenStore which keeps IDs in open-addressed hash tables made of primitive arrays. Each entry costs the two
+ * longs of its UUID, an int holding its expiry in seconds, and an int linking it to the next entry which expires in
+ * the same bucket, with no per-entry objects. The table is split into independently locked segments, so concurrent
+ * callers rarely contend with each other.
+ * <br/>
+ * Entries are bucketed by expiry second on a wheel, so a purge only visits the entries in the buckets for seconds which
+ * have passed since the last purge, rather than the whole table.
+ */
+public class CompactUsedTokenStore implements UsedTokenStore {
+
+    // Expiry times are stored as seconds since 2020-01-01T00:00:00Z, so they fit in an int. Zero marks an empty slot,
+    // and a negative value a deleted one.
+    private static final long EPOCH = 1577836800L;
+    private static final int TOMBSTONE = -1;
+    private static final int WHEEL_SIZE = 1024;
+    private static final int SEGMENTS = 64;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    public CompactUsedTokenStore() {
+        this(SEGMENTS * 16);
+    }
+
+    public CompactUsedTokenStore(int expectedSize) {
+        int segmentCapacity = tableSize((int) Math.ceil(expectedSize / (double) SEGMENTS / LOAD_FACTOR));
+        for(int i = 0 ; i < SEGMENTS ; i++) {
+            segments[i] = new Segment(segmentCapacity);
+        }
+    }
+
+    @Override
+    public boolean markUsed(UUID id, long expiresAt) {
+        return markUsed(id.getMostSignificantBits(), id.getLeastSignificantBits(), expiresAt);
+    }
+
+    boolean markUsed(long most, long least, long expiresAt) {
+        int hash = hash(most, least);
+        return segments[hash >>> 26].add(most, least, toRelative(expiresAt), hash);
+    }
+
+    @Override
+    public void purge(long now) {
+        int relative = toRelative(now);
+        for(Segment segment : segments) {
+            segment.purge(relative);
+        }
+    }
+
+    @Override
+    public int size() {
+        int out = 0;
+        for(Segment segment : segments) {
+            out += segment.size;
+        }
+        return out;
+    }
+
+    public long capacity() {
+        long out = 0;
+        for(Segment segment : segments) {
+            out += segment.expires.length;
+        }
+        return out;
+    }
+
+    void forEach(EntryConsumer consumer) {
+        for(Segment segment : segments) {
+            segment.forEach(consumer);
+        }
+    }
+
+    interface EntryConsumer {
+        void accept(long most, long least, long expiresAt);
+    }
+
+    private static int toRelative(long epochSecond) {
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, epochSecond - EPOCH));
+    }
+
+    private static int tableSize(int minimum) {
+        return Math.max(16, Integer.highestOneBit(Math.max(1, minimum - 1)) << 1);
+    }
+
+    private static int hash(long most, long least) {
+        long h = most * 0x9E3779B97F4A7C15L ^ least;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    private static class Segment {
+
+        private long[] most;
+        private long[] least;
+        private int[] expires;
+        private int[] next;
+        private final int[] wheel = new int[WHEEL_SIZE];
+        private volatile int size;
+        private int used;
+        private int purgedUntil;
+
+        Segment(int capacity) {
+            allocate(capacity);
+        }
+
+        private void allocate(int capacity) {
+            most = new long[capacity];
+            least = new long[capacity];
+            expires = new int[capacity];
+            next = new int[capacity];
+            Arrays.fill(wheel, -1);
+        }
+
+        synchronized boolean add(long msb, long lsb, int expiry, int hash) {
+
+            // Deleted entries are left as tombstones, so the probe continues past them until an empty slot
+            int mask = expires.length - 1;
+            int index = hash & mask;
+            int free = -1;
+            while(expires[index] != 0) {
+                if(expires[index] == TOMBSTONE) {
+                    if(free == -1) free = index;
+                } else if(most[index] == msb && least[index] == lsb) {
+                    return false;
+                }
+                index = (index + 1) & mask;
+            }
+
+            if(free == -1) {
+                if(used + 1 > expires.length * LOAD_FACTOR) {
+                    resize();
+                    return add(msb, lsb, expiry, hash);
+                }
+                free = index;
+                used++;
+            }
+
+            most[free] = msb;
+            least[free] = lsb;
+            expires[free] = expiry;
+            link(free);
+            size++;
+            return true;
+        }
+
+        synchronized void purge(int now) {
+
+            // Only the buckets for seconds which have passed since the last purge are visited. A bucket is shared by
+            // every second with the same position on the wheel, so later entries in it are skipped over.
+            int from = Math.max(purgedUntil, now - WHEEL_SIZE);
+            for(int second = from ; second < now ; second++) {
+                int bucket = second & (WHEEL_SIZE - 1);
+                int previous = -1;
+                int index = wheel[bucket];
+                while(index != -1) {
+                    int following = next[index];
+                    if(expires[index] < now) {
+                        if(previous == -1) {
+                            wheel[bucket] = following;
+                        } else {
+                            next[previous] = following;
+                        }
+                        expires[index] = TOMBSTONE;
+                        size--;
+                    } else {
+                        previous = index;
+                    }
+                    index = following;
+                }
+            }
+            purgedUntil = Math.max(purgedUntil, now);
+        }
+
+        synchronized void forEach(EntryConsumer consumer) {
+            for(int i = 0 ; i < expires.length ; i++) {
+                if(expires[i] > 0) {
+                    consumer.accept(most[i], least[i], expires[i] + EPOCH);
+                }
+            }
+        }
+
+        // Entries which have already expired go in the bucket which the next purge visits first
+        private void link(int index) {
+            int bucket = Math.max(expires[index], purgedUntil) & (WHEEL_SIZE - 1);
+            next[index] = wheel[bucket];
+            wheel[bucket] = index;
+        }
+
+        // Rebuilds the table without tombstones, growing it only if it is more than half full of live entries
+        private void resize() {
+
+            long[] oldMost = most;
+            long[] oldLeast = least;
+            int[] oldExpires = expires;
+
+            allocate(size * 2 > oldExpires.length * LOAD_FACTOR ? oldExpires.length * 2 : oldExpires.length);
+            int mask = expires.length - 1;
+            for(int i = 0 ; i < oldExpires.length ; i++) {
+                if(oldExpires[i] <= 0) continue;
+                int index = hash(oldMost[i], oldLeast[i]) & mask;
+                while(expires[index] != 0) {
+                    index = (index + 1) & mask;
+                }
+                most[index] = oldMost[i];
+                least[index] = oldLeast[i];
+                expires[index] = oldExpires[i];
+                link(index);
+            }
+            used = size;
+        }
+    }
+
+}
@@ -0,0 +1,82 @@
+package org.wallentines.jwt;
+
+import java.util.Iterator;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The default UsedTokenStore. IDs are kept in a ConcurrentHashMap, and in a timer wheel with one bucket per second,
+ * keyed by expiry, so purging only needs to look at the buckets for seconds which have passed.
+ */
+public class ConcurrentUsedTokenStore implements UsedTokenStore {
+
+    private static final int WHEEL_SIZE = 1024;
+
+    private final ConcurrentHashMap<UUID, Long> current = new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<ConcurrentLinkedQueue<UUID>> wheel = new AtomicReferenceArray<>(WHEEL_SIZE);
+    private volatile long lastPurged = Long.MIN_VALUE;
+
+    @Override
+    public boolean markUsed(UUID id, long expiresAt) {
+
+        if(current.putIfAbsent(id, expiresAt) != null) {
+            return false;
+        }
+
+        // Tokens which have already expired go in the next bucket to be swept
+        long purged = lastPurged;
+        bucket(purged == Long.MIN_VALUE ? expiresAt : Math.max(expiresAt, purged + 1)).add(id);
+        return true;
+    }
+
+    @Override
+    public synchronized void purge(long now) {
+
+        long from = lastPurged == Long.MIN_VALUE ? now - WHEEL_SIZE : lastPurged + 1;
+        if(now - from > WHEEL_SIZE) {
+            from = now - WHEEL_SIZE;
+        }
+
+        for(long second = from ; second < now ; second++) {
+            ConcurrentLinkedQueue<UUID> bucket = wheel.get(index(second));
+            if(bucket == null) continue;
+
+            Iterator<UUID> it = bucket.iterator();
+            while(it.hasNext()) {
+                UUID id = it.next();
+                Long expires = current.get(id);
+                if(expires == null) {
+                    it.remove();
+                } else if(expires < now) {
+                    current.remove(id, expires);
+                    it.remove();
+                }
+            }
+        }
+        if(lastPurged == Long.MIN_VALUE || now - 1 > lastPurged) {
+            lastPurged = now - 1;
+        }
+    }
+
+    @Override
+    public int size() {
+        return current.size();
+    }
+
+    private ConcurrentLinkedQueue<UUID> bucket(long second) {
+        int index = index(second);
+        ConcurrentLinkedQueue<UUID> out = wheel.get(index);
+        if(out == null) {
+            wheel.compareAndSet(index, null, new ConcurrentLinkedQueue<>());
+            out = wheel.get(index);
+        }
+        return out;
+    }
+
+    private static int index(long second) {
+        return (int) (second & (WHEEL_SIZE - 1));
+    }
+
+}
@@ -10,6 +10,7 @@ import javax.crypto.spec.IvParameterSpec;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
 import java.security.SecureRandom;
 import java.util.Arrays;
 
@@ -73,6 +74,10 @@ public class CryptCodec<T> {
         return algorithm.decode(key, data, iv);
     }
 
+    public boolean verify(byte[] cipherText, byte[] aad, byte[] authTag) {
+        return algorithm.verify(key, cipherText, iv, aad, authTag);
+    }
+
     public T getKey() {
         return key;
     }
@@ -141,6 +146,11 @@ public class CryptCodec<T> {
         public abstract CryptOutput encode(T key, byte[] bytes, byte[] iv, byte[] aac);
         public abstract byte[] decode(T key, byte[] bytes, byte[] iv);
 
+        // Algorithms which can compute their tag without decrypting should override this
+        public boolean verify(T key, byte[] cipherText, byte[] iv, byte[] aad, byte[] authTag) {
+            byte[] expected = encode(key, decode(key, cipherText, iv), iv, aad).authTag();
+            return MessageDigest.isEqual(expected, authTag);
+        }
 
 
         public CryptCodec<T> createCodec(T key) {
@@ -169,6 +179,8 @@ public class CryptCodec<T> {
 
     private static class AES_CBC_HMAC_SHA2 extends Algorithm<CompoundKey> {
 
+        private final CipherCache ciphers = new CipherCache("AES/CBC/PKCS5Padding");
+
         public AES_CBC_HMAC_SHA2(int keyLength, HashCodec.Algorithm<?> hashAlg) {
             super(keyLength, 16, CompoundKey.type(keyLength, KeyType.AES, hashAlg));
         }
@@ -176,17 +188,16 @@ public class CryptCodec<T> {
         @Override
         public CryptOutput encode(CompoundKey key, byte[] data, byte[] iv, byte[] aad) {
             try {
-                Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
-                cipher.init(Cipher.ENCRYPT_MODE, key.crypt, new IvParameterSpec(iv));
-
-                byte[] cipherText = cipher.doFinal(data);
-
-                ByteBuffer nioBuffer = ByteBuffer.allocate(8);
-                nioBuffer.order(ByteOrder.BIG_ENDIAN);
-                nioBuffer.putLong(aad.length);
+                byte[] cipherText;
+                Cipher cipher = ciphers.acquire();
+                try {
+                    cipher.init(Cipher.ENCRYPT_MODE, key.crypt, new IvParameterSpec(iv));
+                    cipherText = cipher.doFinal(data);
+                } finally {
+                    ciphers.release(cipher);
+                }
 
-                byte[] auth = key.hash.hash(aad, iv, cipherText, nioBuffer.array());
-                return new CryptOutput(cipherText, auth);
+                return new CryptOutput(cipherText, authTag(key, cipherText, iv, aad));
 
             } catch (GeneralSecurityException ex) {
                 throw new IllegalArgumentException("Unable to encrypt data!", ex);
@@ -196,15 +207,32 @@ public class CryptCodec<T> {
         @Override
         public byte[] decode(CompoundKey key, byte[] data, byte[] iv) {
             try {
-                Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
-                cipher.init(Cipher.DECRYPT_MODE, key.crypt, new IvParameterSpec(iv));
-
-                return cipher.doFinal(data);
+                Cipher cipher = ciphers.acquire();
+                try {
+                    cipher.init(Cipher.DECRYPT_MODE, key.crypt, new IvParameterSpec(iv));
+                    return cipher.doFinal(data);
+                } finally {
+                    ciphers.release(cipher);
+                }
 
             } catch (GeneralSecurityException ex) {
                 throw new IllegalArgumentException("Unable to decrypt data!", ex);
             }
         }
+
+        @Override
+        public boolean verify(CompoundKey key, byte[] cipherText, byte[] iv, byte[] aad, byte[] authTag) {
+            return MessageDigest.isEqual(authTag(key, cipherText, iv, aad), authTag);
+        }
+
+        private static byte[] authTag(CompoundKey key, byte[] cipherText, byte[] iv, byte[] aad) {
+
+            ByteBuffer nioBuffer = ByteBuffer.allocate(8);
+            nioBuffer.order(ByteOrder.BIG_ENDIAN);
+            nioBuffer.putLong(aad.length);
+
+            return key.hash.hash(aad, iv, cipherText, nioBuffer.array());
+        }
     }
 
     public record CompoundKey(byte[] rawKey, SecretKey crypt, HashCodec<?> hash) {
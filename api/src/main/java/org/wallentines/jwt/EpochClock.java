@@ -0,0 +1,31 @@
+package org.wallentines.jwt;
+
+import java.time.Clock;
+
+/**
+ * A source of the current time in whole seconds since the epoch, which is the resolution of the time claims in a JWT.
+ * Reading it never allocates.
+ */
+@FunctionalInterface
+public interface EpochClock {
+
+    /**
+     * Gets the current time.
+     * @return The number of whole seconds since the epoch.
+     */
+    long seconds();
+
+    /**
+     * Gets the shared system clock. It is updated by a background thread a few times a second, so reading it is a
+     * single volatile read. It may trail the wall clock by a fraction of a second.
+     * @return The system epoch clock.
+     */
+    static EpochClock system() {
+        return SystemEpochClock.INSTANCE;
+    }
+
+    static EpochClock of(Clock clock) {
+        return () -> Math.floorDiv(clock.millis(), 1000);
+    }
+
+}
@@ -5,18 +5,46 @@ import org.slf4j.LoggerFactory;
 import org.wallentines.mdcfg.serializer.SerializeResult;
 
 import java.io.*;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
-public class FileKeyStore implements KeyStore {
+/**
+ * A KeyStore which reads keys from files in a folder, named after their key ID with an extension for their type. Keys
+ * are loaded the first time they are requested, or all at once by {@link #preload()}. Loaded keys are held in a
+ * concurrent map, so lookups never take a lock, and the map is only rebuilt when every key is read again. After calling
+ * {@link #watch()}, keys which are created, changed, or deleted on disk are picked up without a restart. Changes are
+ * applied once a file has stopped changing for a short time, and a changed file which cannot be read does not replace
+ * a key which is already loaded.
+ * <br/>
+ * A store created without retaining keys reads the key file on every lookup instead, which is meant for use behind a
+ * {@link CachingKeyStore} when there are too many keys to hold in memory.
+ */
+public class FileKeyStore implements KeyStore, Closeable {
 
     private static final Logger LOGGER = LoggerFactory.getLogger("FileKeyStore");
     private static final int HMAC_LENGTH = 32;
     private final Map<KeyType<?>, String> extensions;
-    private final Map<KeyType<?>, KeyRegistry<?>> allKeys = new HashMap<>();
+    private final Map<String, KeyType<?>> types;
+    private static final int MAX_MISSES = 65536;
+    private static final long WATCH_SETTLE_MILLIS = 100;
+    private final Map<LookupKey, Long> misses = new ConcurrentHashMap<>();
+    private final Map<LookupKey, CompletableFuture<Object>> loading = new ConcurrentHashMap<>();
     private final Path keyFolder;
+    private final long missTimeout;
+    private final boolean retainKeys;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private final Object writeLock = new Object();
+    private volatile Map<LookupKey, Object> keys = new ConcurrentHashMap<>();
+    private long version;
+    private WatchService watchService;
 
     public static final Map<KeyType<?>, String> DEFAULT_TYPES = Map.of(
             KeyType.HMAC, "key",
@@ -25,14 +53,129 @@ public class FileKeyStore implements KeyStore {
             KeyType.RSA_PRIVATE, "rsa"
     );
 
+    public static final Duration DEFAULT_MISS_TIMEOUT = Duration.ofSeconds(10);
+
     public FileKeyStore(Path keyFolder) {
-        this.keyFolder = keyFolder;
-        this.extensions = DEFAULT_TYPES;
+        this(keyFolder, DEFAULT_TYPES);
     }
 
     public FileKeyStore(Path keyFolder, Map<KeyType<?>, String> validKeyTypes) {
+        this(keyFolder, validKeyTypes, DEFAULT_MISS_TIMEOUT);
+    }
+
+    /**
+     * Creates a key store which reads keys from the given folder.
+     * @param keyFolder The folder to read keys from.
+     * @param validKeyTypes The file extension used for each key type.
+     * @param missTimeout How long to remember that a key file does not exist before looking for it again.
+     */
+    public FileKeyStore(Path keyFolder, Map<KeyType<?>, String> validKeyTypes, Duration missTimeout) {
+        this(keyFolder, validKeyTypes, missTimeout, true);
+    }
+
+    /**
+     * Creates a key store which reads keys from the given folder.
+     * @param keyFolder The folder to read keys from.
+     * @param validKeyTypes The file extension used for each key type.
+     * @param missTimeout How long to remember that a key file does not exist before looking for it again.
+     * @param retainKeys Whether to keep keys in memory once they have been read. If false, {@link #preload()} and the
+     *                   watcher only forget missing keys and notify listeners.
+     */
+    public FileKeyStore(Path keyFolder, Map<KeyType<?>, String> validKeyTypes, Duration missTimeout, boolean retainKeys) {
         this.keyFolder = keyFolder;
         this.extensions = Map.copyOf(validKeyTypes);
+        this.missTimeout = missTimeout.toNanos();
+        this.retainKeys = retainKeys;
+
+        Map<String, KeyType<?>> types = new HashMap<>();
+        for(Map.Entry<KeyType<?>, String> ent : extensions.entrySet()) {
+            types.put(ent.getValue(), ent.getKey());
+        }
+        this.types = Map.copyOf(types);
+    }
+
+    /**
+     * Reads every key file in the folder, in parallel, and replaces all loaded keys with the result.
+     * @return This key store.
+     */
+    public FileKeyStore preload() {
+
+        if(!retainKeys) {
+            misses.clear();
+            notifyAllChanged();
+            return this;
+        }
+
+        List<Path> files;
+        try(Stream<Path> stream = Files.list(keyFolder)) {
+            files = stream.toList();
+        } catch (IOException ex) {
+            LOGGER.warn("Unable to list key folder {}!", keyFolder, ex);
+            return this;
+        }
+
+        Map<LookupKey, Object> loaded = files.parallelStream()
+                .map(this::readFile)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toConcurrentMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> a));
+
+        synchronized (writeLock) {
+            keys = loaded;
+            version++;
+        }
+        misses.clear();
+        notifyAllChanged();
+        return this;
+    }
+
+    /**
+     * Starts watching the key folder on a background thread. Key files which are created or changed are read again,
+     * and keys whose files are deleted are removed. Each batch of changes is swapped in at once.
+     * @return This key store.
+     * @throws IOException If the folder could not be watched.
+     */
+    public FileKeyStore watch() throws IOException {
+
+        synchronized (writeLock) {
+            if(watchService != null) {
+                return this;
+            }
+            watchService = keyFolder.getFileSystem().newWatchService();
+            keyFolder.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        }
+
+        WatchService service = watchService;
+        Thread thread = new Thread(() -> watchLoop(service), "FileKeyStore Watcher " + keyFolder);
+        thread.setDaemon(true);
+        thread.start();
+        return this;
+    }
+
+    /**
+     * Adds a listener which is told when keys change, whether through this store or on disk while watching.
+     * @param listener The listener to add.
+     * @return This key store.
+     */
+    public FileKeyStore addListener(Listener listener) {
+        listeners.add(listener);
+        return this;
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Stops watching the key folder, if {@link #watch()} was called.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (writeLock) {
+            if(watchService != null) {
+                watchService.close();
+                watchService = null;
+            }
+        }
     }
 
     @Override
@@ -44,47 +187,54 @@ public class FileKeyStore implements KeyStore {
             return null;
         }
 
-        KeyRegistry<?> ureg = allKeys.computeIfAbsent(type, KeyRegistry::new);
-        if(ureg.getType() != type) {
-            LOGGER.warn("Unable to find registry for type {}", type);
-            return null;
+        LookupKey lookup = new LookupKey(type, kid);
+        T out = (T) keys.get(lookup);
+        if(out != null) {
+            return out;
         }
 
-        KeyRegistry<T> reg = (KeyRegistry<T>) ureg;
-        if(!reg.hasKey(kid)) {
+        if(isMissing(lookup)) {
+            return null;
+        }
 
-            Path keyFile = keyFolder.resolve(kid + "." + extensions.get(type));
-            byte[] value;
-            try(
-                    ByteArrayOutputStream bos = new ByteArrayOutputStream();
-                    InputStream fis = Files.newInputStream(keyFile)
-            ) {
+        // Only one thread reads a given key file. Any others asking for it at the same time wait for that result.
+        CompletableFuture<Object> loader = new CompletableFuture<>();
+        CompletableFuture<Object> existing = loading.putIfAbsent(lookup, loader);
+        if(existing != null) {
+            return (T) existing.join();
+        }
 
-                byte[] buffer = new byte[HMAC_LENGTH];
-                int read;
-                while((read = fis.read(buffer)) > -1) {
-                    bos.write(buffer, 0, read);
+        try {
+            out = (T) keys.get(lookup);
+            if(out == null && !isMissing(lookup)) {
+                long startVersion;
+                synchronized (writeLock) {
+                    startVersion = version;
+                }
+                out = readKey(kid, type);
+                if(out == null) {
+                    addMiss(lookup);
+                } else {
+                    // Don't overwrite a change made by the watcher while the file was being read
+                    synchronized (writeLock) {
+                        if(retainKeys && version == startVersion) {
+                            keys.put(lookup, out);
+                        }
+                    }
                 }
-                value = bos.toByteArray();
-
-            } catch (IOException ex) {
-                return null;
-            }
-
-            SerializeResult<T> key = type.create(value);
-            if(!key.isComplete()) {
-                LOGGER.warn("Unable to read key!", key.getError());
-                return null;
             }
+            loader.complete(out);
+            return out;
 
-            reg.setKey(kid, key.getOrThrow());
+        } catch (RuntimeException ex) {
+            loader.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            loading.remove(lookup, loader);
         }
-
-        return reg.getKey(kid);
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public <T> void setKey(String name, KeyType<T> type, T key) {
 
         if(!extensions.containsKey(type)) {
@@ -92,14 +242,15 @@ public class FileKeyStore implements KeyStore {
             return;
         }
 
-        KeyRegistry<?> ureg = allKeys.computeIfAbsent(type, KeyRegistry::new);
-        if(ureg.getType() != type) {
-            LOGGER.warn("Unable to create registry for type {}", type);
-            return;
+        LookupKey lookup = new LookupKey(type, name);
+        synchronized (writeLock) {
+            if(retainKeys) {
+                keys.put(lookup, key);
+            }
+            version++;
         }
-
-        KeyRegistry<T> reg = (KeyRegistry<T>) ureg;
-        reg.setKey(name, key);
+        misses.remove(lookup);
+        notifyChanged(lookup);
 
         // Save key file
         Path f = keyFolder.resolve(name + "." + extensions.get(type));
@@ -113,10 +264,20 @@ public class FileKeyStore implements KeyStore {
     @Override
     public <T> void clearKey(String name, KeyType<T> type) {
 
-        if(!extensions.containsKey(type) || !allKeys.containsKey(type)) {
+        if(!extensions.containsKey(type)) {
             return;
         }
-        if(allKeys.get(type).clearKey(name) != null) {
+
+        LookupKey lookup = new LookupKey(type, name);
+        Object removed;
+        synchronized (writeLock) {
+            removed = keys.remove(lookup);
+            if(removed != null) {
+                version++;
+            }
+        }
+        notifyChanged(lookup);
+        if(removed != null) {
             Path p = keyFolder.resolve(name + "." + extensions.get(type));
             try {
                 if (!Files.deleteIfExists(p)) {
@@ -128,4 +289,212 @@ public class FileKeyStore implements KeyStore {
         }
     }
 
+    private void watchLoop(WatchService service) {
+
+        while(true) {
+            Set<Path> changed = new HashSet<>();
+            boolean overflow = false;
+            try {
+                // Files are often written in several steps, so wait until the folder has been quiet for a moment
+                WatchKey key = service.take();
+                do {
+                    for(WatchEvent<?> event : key.pollEvents()) {
+                        if(event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            overflow = true;
+                        } else {
+                            changed.add(keyFolder.resolve((Path) event.context()));
+                        }
+                    }
+                    key.reset();
+                } while((key = service.poll(WATCH_SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null);
+
+            } catch (InterruptedException | ClosedWatchServiceException ex) {
+                return;
+            }
+
+            try {
+                if(overflow) {
+                    preload();
+                } else {
+                    reload(changed);
+                }
+            } catch (RuntimeException ex) {
+                LOGGER.warn("An error occurred while reloading keys from {}!", keyFolder, ex);
+            }
+        }
+    }
+
+    private void reload(Set<Path> files) {
+
+        Map<LookupKey, Object> updates = new HashMap<>();
+        for(Path file : files) {
+            LookupKey lookup = getLookupKey(file);
+            if(lookup == null) {
+                continue;
+            }
+            if(!Files.exists(file)) {
+                updates.put(lookup, null);
+                continue;
+            }
+
+            // A file which cannot be read may still be being written, so the loaded key is kept until it can be
+            Map.Entry<LookupKey, Object> loaded = readFile(file);
+            if(loaded == null) {
+                if(!retainKeys || keys.containsKey(lookup)) {
+                    LOGGER.warn("Keeping previous key for changed file {}, which could not be read", file.getFileName());
+                }
+                continue;
+            }
+            updates.put(lookup, loaded.getValue());
+        }
+        if(updates.isEmpty()) {
+            return;
+        }
+
+        synchronized (writeLock) {
+            for(Map.Entry<LookupKey, Object> ent : updates.entrySet()) {
+                if(ent.getValue() == null) {
+                    keys.remove(ent.getKey());
+                } else if(retainKeys) {
+                    keys.put(ent.getKey(), ent.getValue());
+                }
+            }
+            version++;
+        }
+        for(LookupKey lookup : updates.keySet()) {
+            misses.remove(lookup);
+            notifyChanged(lookup);
+        }
+    }
+
+    private void notifyChanged(LookupKey lookup) {
+        for(Listener listener : listeners) {
+            try {
+                listener.onKeyChanged(lookup.kid, lookup.type);
+            } catch (RuntimeException ex) {
+                LOGGER.warn("An error occurred while notifying a listener of a change to key {}!", lookup.kid, ex);
+            }
+        }
+    }
+
+    private void notifyAllChanged() {
+        for(Listener listener : listeners) {
+            try {
+                listener.onAllKeysChanged();
+            } catch (RuntimeException ex) {
+                LOGGER.warn("An error occurred while notifying a listener of a change to all keys!", ex);
+            }
+        }
+    }
+
+    private LookupKey getLookupKey(Path file) {
+
+        String fileName = file.getFileName().toString();
+        int index = fileName.lastIndexOf('.');
+        if(index < 1) {
+            return null;
+        }
+
+        KeyType<?> type = types.get(fileName.substring(index + 1));
+        if(type == null) {
+            return null;
+        }
+        return new LookupKey(type, fileName.substring(0, index));
+    }
+
+    private Map.Entry<LookupKey, Object> readFile(Path file) {
+
+        LookupKey lookup = getLookupKey(file);
+        if(lookup == null) {
+            return null;
+        }
+
+        Object key = readKey(lookup.kid, lookup.type);
+        return key == null ? null : Map.entry(lookup, key);
+    }
+
+    private <T> T readKey(String kid, KeyType<T> type) {
+
+        Path keyFile = keyFolder.resolve(kid + "." + extensions.get(type));
+        byte[] value;
+        try(
+                ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                InputStream fis = Files.newInputStream(keyFile)
+        ) {
+
+            byte[] buffer = new byte[HMAC_LENGTH];
+            int read;
+            while((read = fis.read(buffer)) > -1) {
+                bos.write(buffer, 0, read);
+            }
+            value = bos.toByteArray();
+
+        } catch (IOException | InvalidPathException ex) {
+            return null;
+        }
+
+        if(value.length == 0) {
+            return null;
+        }
+
+        SerializeResult<T> key = type.create(value);
+        if(!key.isComplete()) {
+            LOGGER.warn("Unable to read key!", key.getError());
+            return null;
+        }
+
+        return key.getOrThrow();
+    }
+
+    private boolean isMissing(LookupKey lookup) {
+
+        Long expires = misses.get(lookup);
+        if(expires == null) {
+            return false;
+        }
+        if(System.nanoTime() - expires < 0) {
+            return true;
+        }
+        misses.remove(lookup, expires);
+        return false;
+    }
+
+    private void addMiss(LookupKey lookup) {
+
+        if(missTimeout <= 0) {
+            return;
+        }
+
+        // Unknown kids may be chosen by an attacker, so the number of remembered misses is bounded
+        if(misses.size() >= MAX_MISSES) {
+            long now = System.nanoTime();
+            misses.values().removeIf(expires -> now - expires >= 0);
+            if(misses.size() >= MAX_MISSES) {
+                misses.clear();
+            }
+        }
+        misses.put(lookup, System.nanoTime() + missTimeout);
+    }
+
+    private record LookupKey(KeyType<?> type, String kid) { }
+
+    /**
+     * Receives changes to the keys in a FileKeyStore, so that caches of its keys can be kept up to date. Listeners are
+     * called on the thread which made the change, which is the watcher thread for changes on disk.
+     */
+    public interface Listener {
+
+        /**
+         * Called when a key has been set, changed, or removed.
+         * @param kid The key's ID.
+         * @param type The key's type.
+         */
+        void onKeyChanged(String kid, KeyType<?> type);
+
+        /**
+         * Called when every key may have changed, such as after {@link #preload()}.
+         */
+        void onAllKeysChanged();
+    }
+
 }
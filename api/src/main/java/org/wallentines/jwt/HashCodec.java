@@ -13,10 +13,12 @@ public class HashCodec<T> {
     public static final Registry<String, Algorithm<?>> ALGORITHMS = Registry.createStringRegistry();
     private final Algorithm<T> alg;
     private final T key;
+    private final Hasher hasher;
 
     public HashCodec(Algorithm<T> alg, T key) {
         this.alg = alg;
         this.key = key;
+        this.hasher = alg.prepare(key);
     }
 
     public Algorithm<T> getAlgorithm() {
@@ -24,7 +26,7 @@ public class HashCodec<T> {
     }
 
     public byte[] hash(byte[]... input) {
-        return alg.hash(key, input);
+        return hasher.hash(input);
     }
 
     public T getKey() {
@@ -49,6 +51,10 @@ public class HashCodec<T> {
     }
 
 
+    public interface Hasher {
+        byte[] hash(byte[]... inputs);
+    }
+
 
     public static abstract class Algorithm<T> {
 
@@ -60,9 +66,14 @@ public class HashCodec<T> {
 
         public abstract byte[] hash(T key, byte[]... inputs);
 
+        // Binds a key to this algorithm so repeated hashes can reuse setup work. Must be thread-safe.
+        public Hasher prepare(T key) {
+            return inputs -> hash(key, inputs);
+        }
+
         public HashCodec<T> createCodec(ConfigSection header, KeySupplier keySupplier) {
 
-            return new HashCodec<>(this, keySupplier.getKey(header, keyType));
+            return keySupplier.getHashCodec(header, this);
         }
 
 
@@ -87,19 +98,75 @@ public class HashCodec<T> {
 
         @Override
         public byte[] hash(byte[] key, byte[]... input) {
+            return update(createMac(key), input);
+        }
+
+        @Override
+        public Hasher prepare(byte[] key) {
+            return new KeyedMac(this, key);
+        }
 
+        private Mac createMac(byte[] key) {
             try {
                 Mac mac = Mac.getInstance(algorithm);
                 SecretKey secret = new SecretKeySpec(key, mac.getAlgorithm());
                 mac.init(secret);
-                for(byte[] bs : input) {
-                    mac.update(bs);
-                }
-                return mac.doFinal();
+                return mac;
             } catch (GeneralSecurityException ex) {
                 throw new IllegalStateException("Unable to initialize HMAC!");
             }
         }
+
+        private static byte[] update(Mac mac, byte[]... input) {
+            for(byte[] bs : input) {
+                mac.update(bs);
+            }
+            return mac.doFinal();
+        }
+    }
+
+    // Clones of a keyed template Mac are pooled. doFinal() resets a Mac to its keyed state, so it can be reused right away.
+    private static class KeyedMac implements Hasher {
+
+        private final HMAC alg;
+        private final byte[] key;
+        private final InstancePool<Mac> pool;
+        private volatile Mac template;
+
+        KeyedMac(HMAC alg, byte[] key) {
+            this.alg = alg;
+            this.key = key;
+            this.pool = new InstancePool<>();
+        }
+
+        @Override
+        public byte[] hash(byte[]... inputs) {
+            Mac mac = pool.take();
+            if(mac == null) {
+                mac = copyTemplate();
+            }
+            byte[] out = HMAC.update(mac, inputs);
+            pool.release(mac);
+            return out;
+        }
+
+        private Mac copyTemplate() {
+            Mac template = this.template;
+            if(template == null) {
+                synchronized (this) {
+                    template = this.template;
+                    if(template == null) {
+                        template = alg.createMac(key);
+                        this.template = template;
+                    }
+                }
+            }
+            try {
+                return (Mac) template.clone();
+            } catch (CloneNotSupportedException ex) {
+                return alg.createMac(key);
+            }
+        }
     }
     public static final Algorithm<Void> ALG_NONE = new Algorithm<>(null) {
         @Override
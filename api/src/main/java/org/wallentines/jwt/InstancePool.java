@@ -0,0 +1,46 @@
+package org.wallentines.jwt;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A small, lock-free pool for objects which are not thread-safe, like Mac or Cipher instances. Threads are spread
+ * across a fixed number of slots by ID. If a slot is empty, callers should create a new instance, and if it is full
+ * when an instance is released, that instance is dropped.
+ */
+class InstancePool<T> {
+
+    private static final int DEFAULT_SIZE = defaultSize();
+
+    private final AtomicReferenceArray<T> slots;
+    private final int mask;
+
+    InstancePool() {
+        this(DEFAULT_SIZE);
+    }
+
+    InstancePool(int size) {
+        if(Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("Pool size must be a power of two!");
+        }
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    T take() {
+        return slots.getAndSet(slot(), null);
+    }
+
+    void release(T value) {
+        slots.compareAndSet(slot(), null, value);
+    }
+
+    private int slot() {
+        return (int) Thread.currentThread().threadId() & mask;
+    }
+
+    private static int defaultSize() {
+        int threads = Runtime.getRuntime().availableProcessors() * 2;
+        return Math.min(64, Integer.highestOneBit(threads - 1) << 1);
+    }
+
+}
@@ -2,7 +2,6 @@ package org.wallentines.jwt;
 
 import org.jetbrains.annotations.NotNull;
 import org.wallentines.mdcfg.ConfigSection;
-import org.wallentines.mdcfg.codec.DecodeException;
 import org.wallentines.mdcfg.codec.JSONCodec;
 import org.wallentines.mdcfg.serializer.ConfigContext;
 import org.wallentines.mdcfg.serializer.SerializeResult;
@@ -11,7 +10,6 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
 import java.util.Base64;
 
 public class JWESerializer {
@@ -82,29 +80,28 @@ public class JWESerializer {
     }
 
     public static SerializeResult<JWT> read(String jwe, KeySupplier supp) {
+        return ParsedToken.parse(jwe).map(token -> read(token, supp));
+    }
+
+    public static SerializeResult<JWT> read(ParsedToken jwe, KeySupplier supp) {
+        return read(jwe, supp, null);
+    }
 
-        // Split into parts
-        String[] values = jwe.split("\\.", 5);
-        if(values.length != 5) {
+    public static SerializeResult<JWT> read(ParsedToken jwe, KeySupplier supp, ClaimProjection projection) {
+
+        if(jwe.getPartCount() != 5) {
             return SerializeResult.failure("JWE is malformed! Expected 5 parts!");
         }
 
-        Base64.Decoder decoder = Base64.getUrlDecoder();
         JSONCodec json = JSONCodec.minified();
 
-        // Read Header
-        ConfigSection header;
-        try {
-            header = json.decode(ConfigContext.INSTANCE, new ByteArrayInputStream(decoder.decode(values[0])), StandardCharsets.UTF_8).asSection();
-            if (!header.hasString("enc")) {
-                return SerializeResult.failure("Expected header parameter with name enc!");
-            }
-            if (!header.hasString("alg")) {
-                return SerializeResult.failure("Expected header parameter with name alg!");
-            }
-
-        } catch (IOException | DecodeException ex) {
-            return SerializeResult.failure("An exception occurred while reading a JWE header!" + ex.getMessage());
+        // Check Header
+        ConfigSection header = jwe.getHeader();
+        if (!header.hasString("enc")) {
+            return SerializeResult.failure("Expected header parameter with name enc!");
+        }
+        if (!header.hasString("alg")) {
+            return SerializeResult.failure("Expected header parameter with name alg!");
         }
 
         // Find relevant algorithms
@@ -119,7 +116,7 @@ public class JWESerializer {
         }
 
         // Decode IV
-        byte[] iv = decoder.decode(values[2]);
+        byte[] iv = jwe.decodePart(2);
 
         // Find the CEK
         KeyCodec<?,?> codec;
@@ -132,23 +129,32 @@ public class JWESerializer {
             if(!codec.canDecode()) {
                 return SerializeResult.failure("Unable to find decryption key!");
             }
-            crypt = cryptAlg.createCodec(codec.decode(decoder.decode(values[1])), iv);
+            crypt = cryptAlg.createCodec(codec.decode(jwe.decodePart(1)), iv);
         }
 
         // Decode other parts
-        byte[] cipherText = decoder.decode(values[3]);
-        byte[] auth = decoder.decode(values[4]);
-
-        // Decrypt the payload
-        byte[] payloadBytes = crypt.decrypt(cipherText);
+        byte[] cipherText = jwe.decodePart(3);
+        byte[] auth = jwe.decodePart(4);
 
         // Verify authentication tag
-        byte[] newAuth = crypt.encrypt(payloadBytes, values[0].getBytes(StandardCharsets.US_ASCII)).authTag();
-
-        if(!Arrays.equals(newAuth, auth)) {
+        if(!crypt.verify(cipherText, jwe.getPartBytes(0), auth)) {
             return SerializeResult.failure("The JWE authentication tag could not be verified!");
         }
 
+        // Decrypt the payload
+        byte[] payloadBytes;
+        try {
+            payloadBytes = crypt.decrypt(cipherText);
+        } catch (IllegalArgumentException ex) {
+            return SerializeResult.failure("Unable to decrypt JWE payload!");
+        }
+
+        if(projection != null) {
+            KeyCodec<?,?> keyCodec = codec;
+            CryptCodec<?> cryptCodec = crypt;
+            return projection.project(header, payloadBytes, true, false, payload -> new JWE(keyCodec, cryptCodec, header, payload));
+        }
+
         // Assemble the payload
         ConfigSection payload;
         try {
@@ -0,0 +1,62 @@
+package org.wallentines.jwt;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Downloads a JSON Web Key Set document for a {@link JWKSKeyStore}.
+ */
+@FunctionalInterface
+public interface JWKSFetcher {
+
+    /**
+     * Fetches the current key set.
+     * @return The raw JSON document.
+     * @throws IOException If the document could not be fetched.
+     */
+    byte[] fetch() throws IOException;
+
+    static JWKSFetcher ofFile(Path file) {
+        return () -> Files.readAllBytes(file);
+    }
+
+    static JWKSFetcher ofURI(URI uri) {
+        return ofURI(uri, HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build(), Duration.ofSeconds(10));
+    }
+
+    /**
+     * Creates a fetcher which downloads the key set over HTTP.
+     * @param uri The URI of the key set.
+     * @param client The client to send requests with.
+     * @param timeout How long to wait for a response.
+     * @return A new fetcher.
+     */
+    static JWKSFetcher ofURI(URI uri, HttpClient client, Duration timeout) {
+        return () -> {
+            HttpRequest request = HttpRequest.newBuilder(uri)
+                    .timeout(timeout)
+                    .header("Accept", "application/json")
+                    .GET()
+                    .build();
+
+            HttpResponse<byte[]> response;
+            try {
+                response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while fetching " + uri, ex);
+            }
+            if(response.statusCode() != 200) {
+                throw new IOException("Unable to fetch " + uri + "! Status code: " + response.statusCode());
+            }
+            return response.body();
+        };
+    }
+
+}
@@ -0,0 +1,289 @@
+package org.wallentines.jwt;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wallentines.mdcfg.ConfigObject;
+import org.wallentines.mdcfg.ConfigSection;
+import org.wallentines.mdcfg.codec.JSONCodec;
+import org.wallentines.mdcfg.serializer.ConfigContext;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.spec.RSAPrivateCrtKeySpec;
+import java.security.spec.RSAPrivateKeySpec;
+import java.security.spec.RSAPublicKeySpec;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A read-only KeyStore backed by a JSON Web Key Set, such as the one published by an identity provider. Every key in
+ * the set is decoded when the set is fetched, so lookups are a single map read. The set is fetched again in the
+ * background before its time-to-live runs out. If that fails, the previous keys are kept until a later fetch succeeds,
+ * but only up to a maximum staleness, after which no keys are served until the set can be fetched again. By default,
+ * keys are not served past their time-to-live.
+ * <br/>
+ * When a token names a key ID which is not in the set, the set is fetched again immediately, in case the key was
+ * rotated in since the last fetch. These fetches happen at most once per refetch interval, no matter how many unknown
+ * key IDs are requested, so tokens with made-up key IDs cannot flood the key set's host. Only the caller which starts
+ * a fetch waits for it. Lookups never take a lock, and other lookups for unknown key IDs return null straight away.
+ * <br/>
+ * Symmetric ("oct") keys are available as {@link KeyType#HMAC} and {@link KeyType#AES} keys, or only one of them if
+ * the key names an algorithm. RSA keys are available as {@link KeyType#RSA_PUBLIC} keys, and as
+ * {@link KeyType#RSA_PRIVATE} keys if they have private parameters. Keys without an ID are stored as "default".
+ */
+public class JWKSKeyStore implements KeyStore, Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("JWKSKeyStore");
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+    private static final ScheduledExecutorService REFRESH_EXECUTOR = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "JWKSKeyStore Refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public static final Duration DEFAULT_TTL = Duration.ofMinutes(10);
+    public static final Duration DEFAULT_REFETCH_INTERVAL = Duration.ofSeconds(30);
+
+    private static final long NEVER = Long.MIN_VALUE;
+    private static final KeySet EMPTY = new KeySet(Map.of(), 0);
+
+    private final JWKSFetcher fetcher;
+    private final long refetchInterval;
+    private final RefreshTask task;
+    private final long maxStale;
+
+    private final AtomicReference<KeySet> keys = new AtomicReference<>(EMPTY);
+    private final AtomicLong lastAttempt = new AtomicLong(NEVER);
+
+    public JWKSKeyStore(JWKSFetcher fetcher) {
+        this(fetcher, DEFAULT_TTL, DEFAULT_REFETCH_INTERVAL);
+    }
+
+    /**
+     * Creates a key store which fetches keys with the given fetcher. Keys are first fetched when one is requested, or
+     * when {@link #refresh()} is called.
+     * @param fetcher The fetcher to download the key set with.
+     * @param ttl How long a fetched key set may be used. It is fetched again in the background after three quarters
+     *            of this time.
+     * @param refetchInterval The minimum time between fetches caused by unknown key IDs.
+     */
+    public JWKSKeyStore(JWKSFetcher fetcher, Duration ttl, Duration refetchInterval) {
+        this(fetcher, ttl, refetchInterval, ttl);
+    }
+
+    /**
+     * Creates a key store which fetches keys with the given fetcher. Keys are first fetched when one is requested, or
+     * when {@link #refresh()} is called.
+     * @param fetcher The fetcher to download the key set with.
+     * @param ttl How long a fetched key set may be used. It is fetched again in the background after three quarters
+     *            of this time.
+     * @param refetchInterval The minimum time between fetches caused by unknown key IDs.
+     * @param maxStale How long after the last successful fetch keys may still be served while fetches are failing.
+     */
+    public JWKSKeyStore(JWKSFetcher fetcher, Duration ttl, Duration refetchInterval, Duration maxStale) {
+        if(!ttl.isPositive()) {
+            throw new IllegalArgumentException("TTL must be positive!");
+        }
+        this.fetcher = fetcher;
+        this.refetchInterval = refetchInterval.toNanos();
+        this.maxStale = maxStale.toNanos();
+
+        long period = Math.max(1, ttl.toMillis() * 3 / 4);
+        this.task = new RefreshTask(this);
+        task.future = REFRESH_EXECUTOR.scheduleWithFixedDelay(task, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Fetches the key set now, and replaces all keys with the result if it could be read.
+     * @return Whether the key set was fetched and read.
+     */
+    public boolean refresh() {
+        long now = System.nanoTime();
+        lastAttempt.set(now);
+        return fetch(now);
+    }
+
+    public int size() {
+        return liveKeys().size();
+    }
+
+    /**
+     * Stops refreshing the key set in the background.
+     */
+    @Override
+    public void close() {
+        task.future.cancel(false);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T getKey(String name, KeyType<T> type) {
+
+        LookupKey lookup = new LookupKey(type, name);
+        T out = (T) liveKeys().get(lookup);
+        if(out != null) {
+            return out;
+        }
+
+        // The key may have been added since the set was fetched. Only the caller which claims the next attempt fetches,
+        // and any others give up rather than wait for it.
+        long last = lastAttempt.get();
+        long now = System.nanoTime();
+        if(last != NEVER && now - last < refetchInterval || !lastAttempt.compareAndSet(last, now)) {
+            return null;
+        }
+        fetch(now);
+        return (T) liveKeys().get(lookup);
+    }
+
+    @Override
+    public <T> void setKey(String name, KeyType<T> type, T key) {
+        LOGGER.warn("Attempt to set key {} in a read-only JSON Web Key Set", name);
+    }
+
+    @Override
+    public <T> void clearKey(String name, KeyType<T> type) {
+        LOGGER.warn("Attempt to clear key {} in a read-only JSON Web Key Set", name);
+    }
+
+    private Map<LookupKey, Object> liveKeys() {
+        KeySet current = keys.get();
+        if(current.keys.isEmpty() || System.nanoTime() - current.fetchedAt <= maxStale) {
+            return current.keys;
+        }
+        return Map.of();
+    }
+
+    private boolean fetch(long startedAt) {
+
+        ConfigSection jwks;
+        try {
+            byte[] data = fetcher.fetch();
+            jwks = JSONCodec.minified().decode(ConfigContext.INSTANCE, new ByteArrayInputStream(data), StandardCharsets.UTF_8).asSection();
+        } catch (Exception ex) {
+            LOGGER.warn("Unable to fetch JSON Web Key Set!", ex);
+            return false;
+        }
+
+        if(!jwks.hasList("keys")) {
+            LOGGER.warn("JSON Web Key Set has no keys list!");
+            return false;
+        }
+
+        Map<LookupKey, Object> out = new HashMap<>();
+        for(ConfigObject obj : jwks.getList("keys").values()) {
+            if(!obj.isSection()) {
+                continue;
+            }
+            try {
+                readKey(obj.asSection(), out);
+            } catch (IllegalArgumentException | GeneralSecurityException ex) {
+                LOGGER.warn("Skipping invalid JSON Web Key!", ex);
+            }
+        }
+
+        // Fetches may overlap, so a set is only replaced by one which was fetched after it
+        KeySet fetched = new KeySet(Map.copyOf(out), startedAt);
+        KeySet current;
+        do {
+            current = keys.get();
+            if(current != EMPTY && current.fetchedAt - startedAt > 0) {
+                return true;
+            }
+        } while(!keys.compareAndSet(current, fetched));
+        return true;
+    }
+
+    private static void readKey(ConfigSection jwk, Map<LookupKey, Object> out) throws GeneralSecurityException {
+
+        String kid = jwk.hasString("kid") ? jwk.getString("kid") : "default";
+        String alg = jwk.hasString("alg") ? jwk.getString("alg") : null;
+        String kty = jwk.hasString("kty") ? jwk.getString("kty") : "";
+
+        switch (kty) {
+            case "oct" -> {
+                byte[] secret = decode(jwk, "k");
+                if(alg == null || HashCodec.ALGORITHMS.get(alg) != null) {
+                    out.put(new LookupKey(KeyType.HMAC, kid), secret);
+                }
+                if(alg == null || KeyCodec.ALGORITHMS.get(alg) != null) {
+                    out.put(new LookupKey(KeyType.AES, kid), new SecretKeySpec(secret, KeyType.AES.getAlgorithm()));
+                }
+            }
+            case "RSA" -> {
+                KeyFactory factory = KeyFactory.getInstance("RSA");
+                BigInteger modulus = new BigInteger(1, decode(jwk, "n"));
+                BigInteger exponent = new BigInteger(1, decode(jwk, "e"));
+                out.put(new LookupKey(KeyType.RSA_PUBLIC, kid), factory.generatePublic(new RSAPublicKeySpec(modulus, exponent)));
+
+                if(jwk.hasString("d")) {
+                    BigInteger privateExponent = new BigInteger(1, decode(jwk, "d"));
+                    if(jwk.hasString("p") && jwk.hasString("q") && jwk.hasString("dp") && jwk.hasString("dq") && jwk.hasString("qi")) {
+                        out.put(new LookupKey(KeyType.RSA_PRIVATE, kid), factory.generatePrivate(new RSAPrivateCrtKeySpec(
+                                modulus, exponent, privateExponent,
+                                new BigInteger(1, decode(jwk, "p")),
+                                new BigInteger(1, decode(jwk, "q")),
+                                new BigInteger(1, decode(jwk, "dp")),
+                                new BigInteger(1, decode(jwk, "dq")),
+                                new BigInteger(1, decode(jwk, "qi")))));
+                    } else {
+                        out.put(new LookupKey(KeyType.RSA_PRIVATE, kid), factory.generatePrivate(new RSAPrivateKeySpec(modulus, privateExponent)));
+                    }
+                }
+            }
+            default -> LOGGER.debug("Skipping JSON Web Key {} with unsupported type {}", kid, kty);
+        }
+    }
+
+    private static byte[] decode(ConfigSection jwk, String parameter) {
+        if(!jwk.hasString(parameter)) {
+            throw new IllegalArgumentException("Missing parameter " + parameter + "!");
+        }
+        return DECODER.decode(jwk.getString(parameter));
+    }
+
+    private record LookupKey(KeyType<?> type, String kid) { }
+
+    private record KeySet(Map<LookupKey, Object> keys, long fetchedAt) { }
+
+    // Only holds a weak reference, so stores which are no longer used can be collected and their task cancelled
+    private static class RefreshTask implements Runnable {
+
+        private final WeakReference<JWKSKeyStore> store;
+        private volatile ScheduledFuture<?> future;
+
+        RefreshTask(JWKSKeyStore store) {
+            this.store = new WeakReference<>(store);
+        }
+
+        @Override
+        public void run() {
+            JWKSKeyStore store = this.store.get();
+            if(store == null) {
+                future.cancel(false);
+                return;
+            }
+            try {
+                store.refresh();
+            } catch (RuntimeException ex) {
+                LOGGER.warn("An error occurred while refreshing a JSON Web Key Set!", ex);
+            }
+        }
+    }
+
+}
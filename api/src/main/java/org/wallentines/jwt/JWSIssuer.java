@@ -0,0 +1,154 @@
+package org.wallentines.jwt;
+
+import org.wallentines.mdcfg.ConfigSection;
+import org.wallentines.mdcfg.codec.JSONCodec;
+import org.wallentines.mdcfg.serializer.ConfigContext;
+import org.wallentines.mdcfg.serializer.SerializeResult;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.function.Consumer;
+
+/**
+ * Signs many payloads with the same key and header. The JOSE header is encoded once, when the issuer is created, and
+ * reused for every token. Tokens are identical to those written by {@link JWSSerializer#writeString(JWT)} for a JWS
+ * built with {@link JWTBuilder#signed(HashCodec, String)}. Issuers are immutable and can be shared between threads.
+ */
+public class JWSIssuer {
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private final HashCodec<?> signCodec;
+    private final String keyId;
+    private final byte[] headerPrefix;
+
+    public JWSIssuer(HashCodec<?> signCodec) {
+        this(signCodec, null);
+    }
+
+    /**
+     * Creates an issuer which signs with the given codec.
+     * @param signCodec The codec to sign tokens with.
+     * @param keyId The key ID to put in the "kid" header claim, or null to leave it out.
+     */
+    public JWSIssuer(HashCodec<?> signCodec, String keyId) {
+        this.signCodec = signCodec;
+        this.keyId = keyId;
+
+        ConfigSection header = new JWTBuilder().signed(signCodec, keyId).header()
+                .with("alg", HashCodec.ALGORITHMS.getId(signCodec.getAlgorithm()));
+
+        byte[] headerJson;
+        try(ByteArrayOutputStream bos = new ByteArrayOutputStream()) {
+            JSONCodec.minified().encode(ConfigContext.INSTANCE, header, bos);
+            headerJson = bos.toByteArray();
+        } catch (IOException ex) {
+            throw new IllegalStateException("Unable to encode JWS header!", ex);
+        }
+
+        byte[] encoded = ENCODER.encode(headerJson);
+        this.headerPrefix = new byte[encoded.length + 1];
+        System.arraycopy(encoded, 0, headerPrefix, 0, encoded.length);
+        headerPrefix[encoded.length] = '.';
+    }
+
+    public HashCodec<?> getSignCodec() {
+        return signCodec;
+    }
+
+    public String getKeyId() {
+        return keyId;
+    }
+
+    public SerializeResult<String> issue(JWTBuilder builder) {
+        return issue(builder.getPayload());
+    }
+
+    public SerializeResult<String> issue(ConfigSection payload) {
+
+        byte[] payloadJson;
+        try {
+            payloadJson = encodePayload(payload);
+        } catch (IOException ex) {
+            return SerializeResult.failure("Unable to encode JWS payload!");
+        }
+        return SerializeResult.success(new String(sign(payloadJson), StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Signs the payload currently held by a template writer. The writer is not reset.
+     * @param payload The writer holding the payload to sign.
+     * @return A compact token.
+     */
+    public String issue(TokenTemplate.Writer payload) {
+        return new String(sign(payload.toByteArray()), StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Signs each payload in turn and passes the compact token to the consumer.
+     * @param payloads The payloads to sign.
+     * @param consumer The consumer to pass tokens to.
+     * @return The number of tokens issued, or a failure if any payload could not be encoded. Tokens issued before the
+     * failure have already been passed to the consumer.
+     */
+    public SerializeResult<Integer> issueAll(Iterable<ConfigSection> payloads, Consumer<String> consumer) {
+
+        int count = 0;
+        for(ConfigSection payload : payloads) {
+            SerializeResult<String> token = issue(payload);
+            if(!token.isComplete()) {
+                return SerializeResult.failure("Unable to encode JWS payload!");
+            }
+            consumer.accept(token.getOrThrow());
+            count++;
+        }
+        return SerializeResult.success(count);
+    }
+
+    /**
+     * Signs each payload in turn and writes the compact token to the stream as ASCII, followed by a newline. No
+     * intermediate strings are created.
+     * @param payloads The payloads to sign.
+     * @param out The stream to write tokens to.
+     * @return The number of tokens issued, or a failure if any payload could not be encoded or written.
+     */
+    public SerializeResult<Integer> issueAll(Iterable<ConfigSection> payloads, OutputStream out) {
+
+        int count = 0;
+        try {
+            for(ConfigSection payload : payloads) {
+                out.write(sign(encodePayload(payload)));
+                out.write('\n');
+                count++;
+            }
+        } catch (IOException ex) {
+            return SerializeResult.failure("Unable to write JWS!", ex);
+        }
+        return SerializeResult.success(count);
+    }
+
+    // Signs an encoded JSON payload and returns the ASCII bytes of the compact token
+    byte[] sign(byte[] payloadJson) {
+
+        byte[] payload = ENCODER.encode(payloadJson);
+        byte[] sig = ENCODER.encode(signCodec.hash(headerPrefix, payload));
+
+        byte[] out = new byte[headerPrefix.length + payload.length + 1 + sig.length];
+        System.arraycopy(headerPrefix, 0, out, 0, headerPrefix.length);
+        System.arraycopy(payload, 0, out, headerPrefix.length, payload.length);
+        out[headerPrefix.length + payload.length] = '.';
+        System.arraycopy(sig, 0, out, headerPrefix.length + payload.length + 1, sig.length);
+        return out;
+    }
+
+    private static byte[] encodePayload(ConfigSection payload) throws IOException {
+        try(ByteArrayOutputStream bos = new ByteArrayOutputStream()) {
+            JSONCodec.minified().encode(ConfigContext.INSTANCE, payload, bos);
+            return bos.toByteArray();
+        }
+    }
+
+}
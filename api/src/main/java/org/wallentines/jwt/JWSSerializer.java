@@ -9,7 +9,7 @@ import org.wallentines.mdcfg.serializer.SerializeResult;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.Arrays;
+import java.security.MessageDigest;
 import java.util.Base64;
 
 public class JWSSerializer {
@@ -58,25 +58,20 @@ public class JWSSerializer {
     }
 
     public static @NotNull SerializeResult<JWT> read(String jws, KeySupplier keySupplier) {
+        return ParsedToken.parse(jws).map(token -> read(token, keySupplier));
+    }
 
-        String[] parts = jws.split("\\.", 3);
+    public static @NotNull SerializeResult<JWT> read(ParsedToken jws, KeySupplier keySupplier) {
+        return read(jws, keySupplier, null);
+    }
 
-        Base64.Decoder decoder = Base64.getUrlDecoder();
-        JSONCodec json = JSONCodec.minified();
+    public static @NotNull SerializeResult<JWT> read(ParsedToken jws, KeySupplier keySupplier, ClaimProjection projection) {
 
-        ConfigSection header;
-        try {
-            header = json.decode(ConfigContext.INSTANCE, new ByteArrayInputStream(decoder.decode(parts[0]))).asSection();
-        } catch (Exception ex) {
-            return SerializeResult.failure("An error occurred while decoding a JWS header!");
+        if(jws.getPartCount() != 3) {
+            return SerializeResult.failure("JWS is malformed! Expected 3 parts!");
         }
 
-        ConfigSection payload;
-        try {
-            payload = json.decode(ConfigContext.INSTANCE, new ByteArrayInputStream(decoder.decode(parts[1]))).asSection();
-        } catch (Exception ex) {
-            return SerializeResult.failure("An error occurred while decoding a JWS payload!");
-        }
+        ConfigSection header = jws.getHeader();
 
         String algStr = header.getString("alg");
         HashCodec.Algorithm<?> alg = HashCodec.ALGORITHMS.get(algStr);
@@ -85,12 +80,39 @@ public class JWSSerializer {
         }
 
         HashCodec<?> codec = alg.createCodec(header, keySupplier);
+        if(alg.getKeyType() != null && codec.getKey() == null) {
+            return SerializeResult.failure("Unable to find JWS signing key!");
+        }
 
-        byte[] sig = codec.hash(parts[0].getBytes(), ".".getBytes(), parts[1].getBytes());
-        if(!Arrays.equals(sig, decoder.decode(parts[2]))) {
+        // Verify the signature over the raw header and payload before doing any work on the payload
+        byte[] sig;
+        try {
+            sig = jws.decodePart(2);
+        } catch (IllegalArgumentException ex) {
+            return SerializeResult.failure("An error occurred while decoding a JWS signature!");
+        }
+        if(!MessageDigest.isEqual(codec.hash(jws.getBytes(0, 1)), sig)) {
             return SerializeResult.failure("Unable to verify JWS authTag!");
         }
 
+        byte[] payloadBytes;
+        try {
+            payloadBytes = jws.decodePart(1);
+        } catch (IllegalArgumentException ex) {
+            return SerializeResult.failure("An error occurred while decoding a JWS payload!");
+        }
+
+        if(projection != null) {
+            return projection.project(header, payloadBytes, false, alg == HashCodec.ALG_NONE, payload -> new JWS(codec, header, payload));
+        }
+
+        ConfigSection payload;
+        try {
+            payload = JSONCodec.minified().decode(ConfigContext.INSTANCE, new ByteArrayInputStream(payloadBytes)).asSection();
+        } catch (Exception ex) {
+            return SerializeResult.failure("An error occurred while decoding a JWS payload!");
+        }
+
         return SerializeResult.success(new JWS(codec, header, payload));
     }
 
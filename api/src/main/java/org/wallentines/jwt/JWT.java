@@ -3,11 +3,9 @@ package org.wallentines.jwt;
 import org.wallentines.mdcfg.ConfigObject;
 import org.wallentines.mdcfg.ConfigSection;
 import org.wallentines.mdcfg.serializer.SerializeResult;
-import org.wallentines.mdcfg.serializer.Serializer;
 
 import java.time.Clock;
 import java.time.Instant;
-import java.time.temporal.ChronoUnit;
 
 public interface JWT {
 
@@ -30,20 +28,48 @@ public interface JWT {
 
 
     default String getIssuer() {
-        return payload().getOrDefault("iss", (String) null);
+        ConfigObject obj = getClaim("iss");
+        return obj != null && obj.isString() ? obj.asString() : null;
     }
 
 
+    /**
+     * The value returned by the epoch-second accessors when a time claim is missing or is not a number.
+     */
+    long NO_TIME = Long.MIN_VALUE;
+
     default Instant getIssuedAt() {
-        return payload().getOptional("iat", Serializer.LONG).map(Instant::ofEpochSecond).orElse(null);
+        return getInstant("iat");
     }
 
     default Instant getExpiresAt() {
-        return payload().getOptional("exp", Serializer.LONG).map(Instant::ofEpochSecond).orElse(null);
+        return getInstant("exp");
     }
 
     default Instant getValidAt() {
-        return payload().getOptional("nbf", Serializer.LONG).map(Instant::ofEpochSecond).orElse(null);
+        return getInstant("nbf");
+    }
+
+    default long getIssuedAtSeconds() {
+        return getEpochSeconds("iat");
+    }
+
+    default long getExpiresAtSeconds() {
+        return getEpochSeconds("exp");
+    }
+
+    default long getValidAtSeconds() {
+        return getEpochSeconds("nbf");
+    }
+
+    private Instant getInstant(String claim) {
+        long seconds = getEpochSeconds(claim);
+        return seconds == NO_TIME ? null : Instant.ofEpochSecond(seconds);
+    }
+
+    private long getEpochSeconds(String claim) {
+        ConfigObject obj = getClaim(claim);
+        return obj != null && obj.isNumber() ? obj.asNumber().longValue() : NO_TIME;
     }
 
     default boolean isValid() {
@@ -51,8 +77,18 @@ public interface JWT {
     }
 
     default boolean isValid(Clock clock) {
-        Instant valid = getValidAt();
-        return valid == null || valid.isAfter(clock.instant().truncatedTo(ChronoUnit.SECONDS));
+        return isValid(EpochClock.of(clock).seconds(), 0);
+    }
+
+    /**
+     * Determines whether the token's "nbf" time has been reached.
+     * @param now The current time, in seconds since the epoch.
+     * @param leeway How many seconds early the token may be used, to allow for clock skew.
+     * @return Whether the token has no "nbf" claim, or it is no later than now plus the leeway.
+     */
+    default boolean isValid(long now, long leeway) {
+        long valid = getValidAtSeconds();
+        return valid == NO_TIME || valid <= now + leeway;
     }
 
     default boolean isExpired() {
@@ -60,8 +96,18 @@ public interface JWT {
     }
 
     default boolean isExpired(Clock clock) {
-        Instant expires = getExpiresAt();
-        return expires == null || expires.isBefore(clock.instant().truncatedTo(ChronoUnit.SECONDS));
+        return isExpired(EpochClock.of(clock).seconds(), 0);
+    }
+
+    /**
+     * Determines whether the token has expired.
+     * @param now The current time, in seconds since the epoch.
+     * @param leeway How many seconds past its "exp" time the token may be used, to allow for clock skew.
+     * @return Whether the token has no "exp" claim, or it is earlier than now minus the leeway.
+     */
+    default boolean isExpired(long now, long leeway) {
+        long expires = getExpiresAtSeconds();
+        return expires == NO_TIME || expires < now - leeway;
     }
 
     boolean isEncrypted();
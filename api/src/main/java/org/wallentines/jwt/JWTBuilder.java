@@ -82,6 +82,10 @@ public class JWTBuilder {
         return withClaim("nbf", instant.getEpochSecond());
     }
 
+    ConfigSection getPayload() {
+        return payload;
+    }
+
     public JWSSerializer.JWS signed(HashCodec<?> codec, String keyId) {
 
         ConfigSection header = new ConfigSection();
@@ -1,42 +1,257 @@
 package org.wallentines.jwt;
 
 import org.wallentines.mdcfg.ConfigSection;
-import org.wallentines.mdcfg.codec.JSONCodec;
-import org.wallentines.mdcfg.serializer.ConfigContext;
 import org.wallentines.mdcfg.serializer.SerializeResult;
 
-import java.io.ByteArrayInputStream;
-import java.util.Base64;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
 
 public class JWTReader {
 
+    private static final int BATCH_CHUNK_SIZE = 256;
+    private static final KeySupplier NO_KEYS = new KeySupplier() {
+        @Override
+        public <T> T getKey(ConfigSection joseHeader, KeyType<T> type) {
+            return null;
+        }
+    };
+
     public static SerializeResult<JWT> readAny(String s, KeySupplier keySupplier) {
+        return ParsedToken.parse(s).map(token -> readAny(token, keySupplier));
+    }
+
+    public static SerializeResult<JWT> readAny(ParsedToken token, KeySupplier keySupplier) {
+        return readAny(token, keySupplier, null);
+    }
+
+    public static SerializeResult<JWT> readAny(String s, KeySupplier keySupplier, ClaimProjection projection) {
+        return ParsedToken.parse(s).map(token -> readAny(token, keySupplier, projection));
+    }
+
+    public static SerializeResult<JWT> readAny(ParsedToken token, KeySupplier keySupplier, ClaimProjection projection) {
 
-        int firstPeriod = s.indexOf('.');
-        if(firstPeriod == -1) {
-            return SerializeResult.failure("Found malformed JWT!");
+        // JWE
+        if(token.isEncrypted()) {
+            return JWESerializer.read(token, keySupplier, projection);
+        }
+        // JWS
+        else {
+            return JWSSerializer.read(token, keySupplier, projection);
         }
+    }
+
+    public static CompletableFuture<SerializeResult<JWT>> readAnyAsync(String s, AsyncKeySupplier keySupplier) {
+        return readAnyAsync(s, keySupplier, null, AsyncKeySupplier.DEFAULT_EXECUTOR);
+    }
 
-        Base64.Decoder decoder = Base64.getUrlDecoder();
-        JSONCodec json = JSONCodec.minified();
+    public static CompletableFuture<SerializeResult<JWT>> readAnyAsync(String s, AsyncKeySupplier keySupplier, Executor executor) {
+        return readAnyAsync(s, keySupplier, null, executor);
+    }
 
-        String headerStr = s.substring(0, s.indexOf('.'));
+    /**
+     * Reads a compact token without blocking the calling thread. The header is decoded on the calling thread, then the
+     * key it needs is requested from the key supplier, and the token is verified and decoded on the executor once the
+     * key is available.
+     * @param s The token to read.
+     * @param keySupplier The key supplier to read the token with.
+     * @param projection The claims to decode, or null to decode the whole payload.
+     * @param executor The executor to verify and decode the token on.
+     * @return A future which completes with the result of reading the token. It does not complete exceptionally.
+     */
+    public static CompletableFuture<SerializeResult<JWT>> readAnyAsync(String s, AsyncKeySupplier keySupplier, ClaimProjection projection, Executor executor) {
 
-        ConfigSection header;
+        SerializeResult<ParsedToken> parsed = ParsedToken.parse(s);
+        if(!parsed.isComplete()) {
+            return CompletableFuture.completedFuture(parsed.map(ignored -> SerializeResult.failure("Found malformed JWT!")));
+        }
+
+        ParsedToken token = parsed.getOrThrow();
+        KeyType<?> type = getKeyType(token.getHeader());
+        if(type == null) {
+            // Unsigned tokens and unknown algorithms need no key, and the reader reports the latter
+            return CompletableFuture.supplyAsync(() -> readAny(token, NO_KEYS, projection), executor);
+        }
+        return readAnyAsync(token, keySupplier, type, projection, executor);
+    }
+
+    private static <T> CompletableFuture<SerializeResult<JWT>> readAnyAsync(ParsedToken token, AsyncKeySupplier keySupplier, KeyType<T> type, ClaimProjection projection, Executor executor) {
+
+        CompletableFuture<T> key;
         try {
-            header = json.decode(ConfigContext.INSTANCE, new ByteArrayInputStream(decoder.decode(headerStr))).asSection();
-        } catch (Exception ex) {
-            return SerializeResult.failure("Unable to read JWT header!", ex);
+            key = keySupplier.getKeyAsync(token.getHeader(), type);
+        } catch (RuntimeException ex) {
+            key = CompletableFuture.failedFuture(ex);
         }
 
-        // JWE
+        return key.handleAsync((value, ex) -> {
+            if(ex != null) {
+                return SerializeResult.failure("Unable to load key!", ex);
+            }
+            try {
+                return readAny(token, KeySupplier.of(value, type), projection);
+            } catch (RuntimeException ex2) {
+                return SerializeResult.failure("An error occurred while reading a token!", ex2);
+            }
+        }, executor);
+    }
+
+    // The type of key needed to verify or decrypt a token with the given header
+    private static KeyType<?> getKeyType(ConfigSection header) {
+
+        if(!header.hasString("alg")) {
+            return null;
+        }
+        String alg = header.getString("alg");
+
         if(header.hasString("enc")) {
-            return JWESerializer.read(s, keySupplier);
+            KeyCodec.Algorithm<?,?> keyAlg = KeyCodec.ALGORITHMS.get(alg);
+            if(keyAlg == KeyCodec.ALG_DIRECT) {
+                CryptCodec.Algorithm<?> cryptAlg = CryptCodec.ALGORITHMS.get(header.getString("enc"));
+                return cryptAlg == null ? null : cryptAlg.getKeyType();
+            }
+            return keyAlg == null ? null : keyAlg.getDecryptionKeyType();
         }
-        // JWS
-        else {
-            return JWSSerializer.read(s, keySupplier);
+
+        HashCodec.Algorithm<?> hashAlg = HashCodec.ALGORITHMS.get(alg);
+        return hashAlg == null ? null : hashAlg.getKeyType();
+    }
+
+    public static List<SerializeResult<JWT>> readAll(String[] tokens, KeySupplier keySupplier) {
+        return readAll(Arrays.asList(tokens), keySupplier);
+    }
+
+    public static List<SerializeResult<JWT>> readAll(Collection<String> tokens, KeySupplier keySupplier) {
+        return readAll(tokens, keySupplier, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Reads a batch of compact tokens in parallel. Tokens are grouped by key ID, and each key is only requested from
+     * the key supplier once per distinct header in the batch. The codecs made for a key are shared by every token which
+     * uses it.
+     * @param tokens The tokens to read.
+     * @param keySupplier The key supplier to read tokens with.
+     * @param executor The executor to read tokens on.
+     * @return The result of reading each token, in the same order as the input.
+     */
+    public static List<SerializeResult<JWT>> readAll(Collection<String> tokens, KeySupplier keySupplier, Executor executor) {
+        return readAll(tokens, keySupplier, executor, header -> null, Function.identity());
+    }
+
+    // Tokens whose header fails the header check are not read, so no key is looked up for them. The check returns an
+    // error message, or null if the header is allowed.
+    static List<SerializeResult<JWT>> readAll(Collection<String> tokens, KeySupplier keySupplier, Executor executor, Function<ConfigSection, String> checkHeader, Function<SerializeResult<JWT>, SerializeResult<JWT>> then) {
+
+        String[] input = tokens.toArray(new String[0]);
+
+        // Split and decode the headers first, so tokens can be grouped by key
+        ParsedToken[] parsed = new ParsedToken[input.length];
+        @SuppressWarnings("unchecked")
+        SerializeResult<JWT>[] results = new SerializeResult[input.length];
+
+        List<CompletableFuture<?>> parseTasks = new ArrayList<>();
+        for(int start = 0 ; start < input.length ; start += BATCH_CHUNK_SIZE) {
+            int from = start;
+            int to = Math.min(input.length, start + BATCH_CHUNK_SIZE);
+            parseTasks.add(CompletableFuture.runAsync(() -> {
+                for(int i = from ; i < to ; i++) {
+                    SerializeResult<ParsedToken> token = ParsedToken.parse(input[i]);
+                    if(token.isComplete()) {
+                        String error = checkHeader.apply(token.getOrThrow().getHeader());
+                        if(error == null) {
+                            parsed[i] = token.getOrThrow();
+                        } else {
+                            results[i] = SerializeResult.failure(error);
+                        }
+                    } else {
+                        results[i] = apply(then, token.map(ignored -> SerializeResult.failure("Found malformed JWT!")));
+                    }
+                }
+            }, executor));
+        }
+        CompletableFuture.allOf(parseTasks.toArray(new CompletableFuture[0])).join();
+
+        Map<String, List<Integer>> groups = new HashMap<>();
+        for(int i = 0 ; i < parsed.length ; i++) {
+            if(parsed[i] != null) {
+                ConfigSection header = parsed[i].getHeader();
+                String kid = header.hasString("kid") ? header.getString("kid") : "";
+                groups.computeIfAbsent(kid, k -> new ArrayList<>()).add(i);
+            }
+        }
+
+        KeySupplier batchSupplier = new PreparedKeySupplier(new BatchKeySupplier(keySupplier));
+        List<CompletableFuture<?>> readTasks = new ArrayList<>();
+        for(List<Integer> group : groups.values()) {
+            for(int start = 0 ; start < group.size() ; start += BATCH_CHUNK_SIZE) {
+                List<Integer> chunk = group.subList(start, Math.min(group.size(), start + BATCH_CHUNK_SIZE));
+                readTasks.add(CompletableFuture.runAsync(() -> {
+                    for(int index : chunk) {
+                        SerializeResult<JWT> result;
+                        try {
+                            result = then.apply(readAny(parsed[index], batchSupplier));
+                        } catch (RuntimeException ex) {
+                            result = SerializeResult.failure("An error occurred while reading a token!", ex);
+                        }
+                        results[index] = result;
+                    }
+                }, executor));
+            }
         }
+        CompletableFuture.allOf(readTasks.toArray(new CompletableFuture[0])).join();
+
+        return Arrays.asList(results);
+    }
+
+    // An error for one token, such as a full used token store, should not fail the rest of the batch
+    private static SerializeResult<JWT> apply(Function<SerializeResult<JWT>, SerializeResult<JWT>> then, SerializeResult<JWT> result) {
+        try {
+            return then.apply(result);
+        } catch (RuntimeException ex) {
+            return SerializeResult.failure("An error occurred while reading a token!", ex);
+        }
+    }
+
+    // Remembers each key it looks up, including missing keys, for the duration of a batch. Lookups are keyed by the
+    // whole header, so suppliers which look at header parameters other than the key ID still see the right header.
+    private static class BatchKeySupplier implements KeySupplier {
+
+        private static final Object MISSING = new Object();
+
+        private final KeySupplier delegate;
+        private final Map<KeyLookup, CompletableFuture<Object>> keys = new ConcurrentHashMap<>();
+
+        BatchKeySupplier(KeySupplier delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T getKey(ConfigSection joseHeader, KeyType<T> type) {
+
+            // The first thread to ask loads the key without holding a map lock. Any others wait for its result.
+            KeyLookup lookup = new KeyLookup(type, joseHeader);
+            CompletableFuture<Object> loader = new CompletableFuture<>();
+            CompletableFuture<Object> existing = keys.putIfAbsent(lookup, loader);
+            if(existing == null) {
+                try {
+                    T key = delegate.getKey(joseHeader, type);
+                    loader.complete(key == null ? MISSING : key);
+                } catch (RuntimeException ex) {
+                    loader.completeExceptionally(ex);
+                    throw ex;
+                }
+                existing = loader;
+            }
+
+            Object out = existing.join();
+            return out == MISSING ? null : (T) out;
+        }
+
+        private record KeyLookup(KeyType<?> type, ConfigSection header) { }
     }
 
 }
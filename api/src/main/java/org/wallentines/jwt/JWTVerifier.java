@@ -3,17 +3,24 @@ package org.wallentines.jwt;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wallentines.mdcfg.ConfigObject;
-import org.wallentines.mdcfg.ConfigPrimitive;
+import org.wallentines.mdcfg.ConfigSection;
+import org.wallentines.mdcfg.serializer.SerializeResult;
 
 import java.time.Clock;
+import java.time.Duration;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Predicate;
 
 public class JWTVerifier {
 
     private static final Logger LOGGER = LoggerFactory.getLogger("JWTVerifier");
-    private final Clock clock;
+    private EpochClock clock;
+    private long leeway;
     private final Map<String, Predicate<ConfigObject>> verify;
     private boolean allowExpired;
     private boolean allowUnprotected;
@@ -21,7 +28,7 @@ public class JWTVerifier {
     private UsedTokenCache oneTimeCache;
 
     public JWTVerifier() {
-        this.clock = Clock.systemUTC();
+        this.clock = EpochClock.system();
         this.verify = new HashMap<>();
     }
 
@@ -65,37 +72,154 @@ public class JWTVerifier {
         return this;
     }
 
+    public JWTVerifier withClock(Clock clock) {
+        return withClock(EpochClock.of(clock));
+    }
+
+    public JWTVerifier withClock(EpochClock clock) {
+        this.clock = clock;
+        return this;
+    }
+
+    /**
+     * Accepts tokens which expired, or are not yet valid, by up to the given amount, to allow for clock skew between
+     * the issuer and this verifier. One-time token IDs are remembered for this much longer as well.
+     * @param leeway The allowed clock skew, which is rounded down to whole seconds.
+     * @return This verifier.
+     */
+    public JWTVerifier withLeeway(Duration leeway) {
+        if(leeway.isNegative()) {
+            throw new IllegalArgumentException("Leeway must not be negative!");
+        }
+        this.leeway = leeway.getSeconds();
+        return this;
+    }
+
     public JWTVerifier enforceSingleUse(UsedTokenCache cache) {
         this.oneTimeCache = cache;
         return this;
     }
 
     public boolean verify(JWT jwt) {
+        return checkClaims(jwt) == null;
+    }
+
+    /**
+     * Checks whether a JOSE header is allowed by this verifier's policy, without doing any cryptography.
+     * @param header The decoded JOSE header.
+     * @return Whether a token with this header could pass verification.
+     */
+    public boolean verifyHeader(ConfigSection header) {
+        return checkHeader(header) == null;
+    }
+
+    public SerializeResult<JWT> read(String token, KeySupplier keySupplier) {
+        return read(token, keySupplier, null);
+    }
 
-        if(!allowExpired && (jwt.isExpired(clock) || !jwt.isValid(clock))) {
-            return false;
+    public SerializeResult<JWT> read(String token, KeySupplier keySupplier, ClaimProjection projection) {
+        return ParsedToken.parse(token).map(parsed -> read(parsed, keySupplier, projection));
+    }
+
+    /**
+     * Reads and verifies a token, cheapest checks first. The header policy is checked as soon as the header is
+     * decoded, before any key is looked up, then the signature or authentication tag, then the claims. Reading stops
+     * at the first check which fails.
+     * @param token The parsed token.
+     * @param keySupplier The key supplier to read the token with.
+     * @param projection The claims to decode, or null to decode the whole payload. Claims checked by this verifier
+     *                   must be included.
+     * @return The verified token, or a failure describing the first check which failed.
+     */
+    public SerializeResult<JWT> read(ParsedToken token, KeySupplier keySupplier, ClaimProjection projection) {
+
+        String error = checkHeader(token.getHeader());
+        if(error != null) {
+            return SerializeResult.failure(error);
         }
 
-        if(!allowUnprotected && jwt.isUnprotected()) {
-            return false;
+        SerializeResult<JWT> result = JWTReader.readAny(token, keySupplier, projection);
+        if(!result.isComplete()) {
+            return result;
         }
 
-        if(requireEncrypted && !jwt.isEncrypted()) {
-            return false;
+        error = checkClaims(result.getOrThrow());
+        if(error != null) {
+            return SerializeResult.failure(error);
         }
+        return result;
+    }
 
-        if(oneTimeCache != null && !oneTimeCache.validate(jwt)) {
-            LOGGER.warn("Found reused one-time token! {}", oneTimeCache.getIdClaim());
-            return false;
+    private String checkHeader(ConfigSection header) {
+
+        boolean encrypted = header.hasString("enc");
+        if(requireEncrypted && !encrypted) {
+            return "Token is not encrypted!";
+        }
+
+        if(!encrypted) {
+            HashCodec.Algorithm<?> alg = header.hasString("alg") ? HashCodec.ALGORITHMS.get(header.getString("alg")) : null;
+            if(alg == null) {
+                return "Token uses an unknown algorithm!";
+            }
+            if(!allowUnprotected && alg == HashCodec.ALG_NONE) {
+                return "Token is unprotected!";
+            }
+        }
+        return null;
+    }
+
+    private String checkClaims(JWT jwt) {
+
+        long now = clock.seconds();
+        if(!allowExpired && (jwt.isExpired(now, leeway) || !jwt.isValid(now, leeway))) {
+            return "Token is expired or not yet valid!";
+        }
+
+        if(!allowUnprotected && jwt.isUnprotected()) {
+            return "Token is unprotected!";
+        }
+
+        if(requireEncrypted && !jwt.isEncrypted()) {
+            return "Token is not encrypted!";
         }
 
         for(Map.Entry<String, Predicate<ConfigObject>> ent : verify.entrySet()) {
             ConfigObject obj = jwt.getClaim(ent.getKey());
             if(obj == null || !ent.getValue().test(obj)) {
-                return false;
+                return "Token claim " + ent.getKey() + " does not match!";
             }
         }
-        return true;
+
+        // Checked last, so a token which fails any other check does not use up its ID
+        if(oneTimeCache != null && !oneTimeCache.validate(jwt, leeway)) {
+            LOGGER.warn("Found reused one-time token! {}", oneTimeCache.getIdClaim());
+            return "Token has already been used!";
+        }
+        return null;
+    }
+
+    public List<SerializeResult<JWT>> verifyAll(Collection<String> tokens, KeySupplier keySupplier) {
+        return verifyAll(tokens, keySupplier, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Reads and verifies a batch of compact tokens in parallel. See {@link JWTReader#readAll(Collection, KeySupplier, Executor)}.
+     * As with {@link #read(ParsedToken, KeySupplier, ClaimProjection)}, the header policy is checked before any key
+     * is looked up.
+     * @param tokens The tokens to read.
+     * @param keySupplier The key supplier to read tokens with.
+     * @param executor The executor to read and verify tokens on.
+     * @return The result for each token, in the same order as the input. Tokens which could be read but did not pass
+     * verification are reported as failures.
+     */
+    public List<SerializeResult<JWT>> verifyAll(Collection<String> tokens, KeySupplier keySupplier, Executor executor) {
+        return JWTReader.readAll(tokens, keySupplier, executor, this::checkHeader, result -> {
+            if(!result.isComplete() || verify(result.getOrThrow())) {
+                return result;
+            }
+            return SerializeResult.failure("Token failed verification!");
+        });
     }
 
 }
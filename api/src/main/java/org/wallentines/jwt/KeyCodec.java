@@ -101,20 +101,24 @@ public class KeyCodec<E extends Key, D extends Key> {
 
         private final KeyType<E> encKeyType;
         private final KeyType<D> decKeyType;
-        private final String algorithm;
+        private final CipherCache ciphers;
 
         public Algorithm(KeyType<E> encKeyType, KeyType<D> decKeyType, String algorithm) {
             this.encKeyType = encKeyType;
             this.decKeyType = decKeyType;
-            this.algorithm = algorithm;
+            this.ciphers = new CipherCache(algorithm);
         }
 
         public byte[] encode(E key, byte[] data) {
             if(key == null) throw new IllegalStateException("Unable to encode key with this codec!");
             try {
-                Cipher cipher = Cipher.getInstance(algorithm);
-                cipher.init(Cipher.ENCRYPT_MODE, key);
-                return cipher.doFinal(data);
+                Cipher cipher = ciphers.acquire();
+                try {
+                    cipher.init(Cipher.ENCRYPT_MODE, key);
+                    return cipher.doFinal(data);
+                } finally {
+                    ciphers.release(cipher);
+                }
             } catch (GeneralSecurityException ex) {
                 throw new IllegalArgumentException("Unable to encode key!", ex);
             }
@@ -123,9 +127,13 @@ public class KeyCodec<E extends Key, D extends Key> {
         public byte[] decode(D key, byte[] data) {
             if(key == null) throw new IllegalStateException("Unable to decode key with this codec!");
             try {
-                Cipher cipher = Cipher.getInstance(algorithm);
-                cipher.init(Cipher.DECRYPT_MODE, key);
-                return cipher.doFinal(data);
+                Cipher cipher = ciphers.acquire();
+                try {
+                    cipher.init(Cipher.DECRYPT_MODE, key);
+                    return cipher.doFinal(data);
+                } finally {
+                    ciphers.release(cipher);
+                }
             } catch (GeneralSecurityException ex) {
                 throw new IllegalArgumentException("Unable to decode key!", ex);
             }
@@ -141,9 +149,7 @@ public class KeyCodec<E extends Key, D extends Key> {
 
         public KeyCodec<E,D> createCodec(ConfigSection header, KeySupplier supp) {
 
-            E encKey = supp.getKey(header, encKeyType);
-            D decKey = supp.getKey(header, decKeyType);
-            return new KeyCodec<>(this, encKey, decKey);
+            return supp.getKeyCodec(header, this);
         }
     }
 
@@ -2,8 +2,8 @@ package org.wallentines.jwt;
 
 import org.wallentines.mdcfg.ConfigSection;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public interface KeyStore {
 
@@ -55,7 +55,7 @@ public interface KeyStore {
 
     class KeyRegistry<T> {
         private final KeyType<T> type;
-        private final Map<String, T> keys = new HashMap<>();
+        private final Map<String, T> keys = new ConcurrentHashMap<>();
 
         public KeyRegistry(KeyType<T> type) {
             this.type = type;
@@ -70,6 +70,10 @@ public interface KeyStore {
             return keys.get(key);
         }
         void setKey(String name, T key) {
+            if(key == null) {
+                this.keys.remove(name);
+                return;
+            }
             this.keys.put(name, key);
         }
         T clearKey(String name) {
@@ -9,9 +9,36 @@ public interface KeySupplier {
 
     <T> T getKey(ConfigSection joseHeader, KeyType<T> type);
 
+    // Called by HashCodec.Algorithm.createCodec(). Suppliers may return a codec which was prepared for an earlier token.
+    default <T> HashCodec<T> getHashCodec(ConfigSection joseHeader, HashCodec.Algorithm<T> alg) {
+        return new HashCodec<>(alg, getKey(joseHeader, alg.getKeyType()));
+    }
+
+    // Called by KeyCodec.Algorithm.createCodec(). Suppliers may return a codec which was prepared for an earlier token.
+    default <E extends Key, D extends Key> KeyCodec<E, D> getKeyCodec(ConfigSection joseHeader, KeyCodec.Algorithm<E, D> alg) {
+        E encKey = getKey(joseHeader, alg.getEncryptionKeyType());
+        D decKey = getKey(joseHeader, alg.getDecryptionKeyType());
+        return new KeyCodec<>(alg, encKey, decKey);
+    }
+
 
     static <T> KeySupplier of(HashCodec<T> codec) {
-        return of(codec.getKey(), codec.getAlgorithm().getKeyType());
+        KeySupplier keys = of(codec.getKey(), codec.getAlgorithm().getKeyType());
+        return new KeySupplier() {
+            @Override
+            public <T2> T2 getKey(ConfigSection joseHeader, KeyType<T2> type) {
+                return keys.getKey(joseHeader, type);
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public <T2> HashCodec<T2> getHashCodec(ConfigSection joseHeader, HashCodec.Algorithm<T2> alg) {
+                if(alg == codec.getAlgorithm()) {
+                    return (HashCodec<T2>) codec;
+                }
+                return KeySupplier.super.getHashCodec(joseHeader, alg);
+            }
+        };
     }
 
     static <T> KeySupplier of(CryptCodec<T> codec) {
@@ -40,6 +67,16 @@ public interface KeySupplier {
         return type.create(keyData).flatMap(key -> of(key, type));
     }
 
+    /**
+     * Wraps a key supplier so that codecs, such as HMACs keyed for a particular secret, are prepared once per
+     * algorithm and key ID and reused by later tokens.
+     * @param supplier The key supplier to wrap.
+     * @return A caching key supplier.
+     */
+    static KeySupplier prepared(KeySupplier supplier) {
+        return new PreparedKeySupplier(supplier);
+    }
+
     static KeySupplier fromHeader(KeyStore store) {
 
         return fromHeader(store, null, null);
@@ -0,0 +1,119 @@
+package org.wallentines.jwt;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.WeakReference;
+import java.time.Clock;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A UsedTokenCache which remembers the IDs of one-time tokens in this process until they expire. IDs are kept in a
+ * {@link UsedTokenStore}, which checks and records an ID in a single atomic operation, so one cache can be shared by
+ * any number of threads without external locking. Expired IDs are purged by a shared background thread once a second,
+ * so validation never pays for eviction.
+ */
+public class LocalUsedTokenCache implements UsedTokenCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("LocalUsedTokenCache");
+    private static final ScheduledExecutorService PURGE_EXECUTOR = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "UsedTokenCache Purge");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final String idClaim;
+    private final EpochClock timeoutClock;
+    private final UsedTokenStore store;
+
+    public LocalUsedTokenCache(String idClaim) {
+        this(idClaim, EpochClock.system(), new ConcurrentUsedTokenStore());
+    }
+
+    public LocalUsedTokenCache(String idClaim, Clock timeoutClock) {
+        this(idClaim, timeoutClock, new ConcurrentUsedTokenStore());
+    }
+
+    public LocalUsedTokenCache(String idClaim, UsedTokenStore store) {
+        this(idClaim, EpochClock.system(), store);
+    }
+
+    public LocalUsedTokenCache(String idClaim, Clock timeoutClock, UsedTokenStore store) {
+        this(idClaim, EpochClock.of(timeoutClock), store);
+    }
+
+    public LocalUsedTokenCache(String idClaim, EpochClock timeoutClock, UsedTokenStore store) {
+        this.idClaim = idClaim;
+        this.timeoutClock = timeoutClock;
+        this.store = store;
+
+        PurgeTask task = new PurgeTask(this);
+        task.future = PURGE_EXECUTOR.scheduleAtFixedRate(task, 1, 1, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public String getIdClaim() {
+        return idClaim;
+    }
+
+    public UsedTokenStore getStore() {
+        return store;
+    }
+
+    @Override
+    public boolean validate(JWT jwt, long leeway) {
+
+        long exp = jwt.getExpiresAtSeconds();
+        if(exp == JWT.NO_TIME) {
+            return false;
+        }
+
+        UUID tokenId = UsedTokenCache.getTokenId(jwt, idClaim);
+        if(tokenId == null) {
+            return false;
+        }
+
+        return store.markUsed(tokenId, UsedTokenCache.retainUntil(exp, leeway));
+    }
+
+    public int size() {
+        return store.size();
+    }
+
+    /**
+     * Removes every ID whose token expired before the current second. This is called automatically once a second.
+     */
+    public void purge() {
+        store.purge(timeoutClock.seconds());
+    }
+
+    // Only holds a weak reference, so caches which are no longer used can be collected and their task cancelled
+    private static class PurgeTask implements Runnable {
+
+        private final WeakReference<LocalUsedTokenCache> cache;
+        private volatile ScheduledFuture<?> future;
+
+        PurgeTask(LocalUsedTokenCache cache) {
+            this.cache = new WeakReference<>(cache);
+        }
+
+        @Override
+        public void run() {
+            LocalUsedTokenCache cache = this.cache.get();
+            if(cache == null) {
+                future.cancel(false);
+                return;
+            }
+            try {
+                cache.purge();
+            } catch (RuntimeException ex) {
+                LOGGER.warn("An error occurred while purging used tokens!", ex);
+            }
+        }
+    }
+
+}
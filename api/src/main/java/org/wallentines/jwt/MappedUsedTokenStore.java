@@ -0,0 +1,285 @@
+package org.wallentines.jwt;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A UsedTokenStore which survives restarts. Lookups are served from a {@link CompactUsedTokenStore} in memory, and
+ * every new ID is also appended to a memory-mapped log file, which is read back when the store is opened. Writes are
+ * not forced to disk per token. Instead, the log is flushed on every purge, so at most about a second of IDs can be
+ * lost if the machine itself crashes. When most of the log has expired, it is rewritten with only the live IDs.
+ * <br/>
+ * Each record ends with a check word computed from its contents, so records which were reserved but never written, or
+ * only partly written, are skipped when the log is read back instead of ending it.
+ */
+public class MappedUsedTokenStore implements UsedTokenStore, Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("MappedUsedTokenStore");
+
+    private static final int MAGIC = 0x4A545543;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_SIZE = 32;
+    private static final long MIN_FILE_SIZE = HEADER_SIZE + RECORD_SIZE * 65536L;
+    private static final long MAX_FILE_SIZE = Integer.MAX_VALUE - (Integer.MAX_VALUE - HEADER_SIZE) % RECORD_SIZE;
+
+    private final Path file;
+    private final CompactUsedTokenStore memory;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicLong position;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+
+    private MappedUsedTokenStore(Path file, CompactUsedTokenStore memory, FileChannel channel, MappedByteBuffer buffer, long position) {
+        this.file = file;
+        this.memory = memory;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.position = new AtomicLong(position);
+    }
+
+    /**
+     * Opens a store backed by the given file, creating it if it does not exist. IDs which have already expired are
+     * not loaded.
+     * @param file The log file.
+     * @return A new store.
+     * @throws IOException If the file could not be read or created.
+     */
+    public static MappedUsedTokenStore open(Path file) throws IOException {
+        return open(file, EpochClock.system());
+    }
+
+    /**
+     * Opens a store backed by the given file, creating it if it does not exist. IDs which have already expired are
+     * not loaded.
+     * @param file The log file.
+     * @param clock The clock used to decide which IDs have expired.
+     * @return A new store.
+     * @throws IOException If the file could not be read or created.
+     */
+    public static MappedUsedTokenStore open(Path file, EpochClock clock) throws IOException {
+
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long size = channel.size();
+            if(size == 0) {
+                MappedByteBuffer buffer = map(channel, MIN_FILE_SIZE);
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, VERSION);
+                return new MappedUsedTokenStore(file, new CompactUsedTokenStore(), channel, buffer, HEADER_SIZE);
+            }
+
+            MappedByteBuffer buffer = map(channel, size);
+            if(size < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException("File " + file + " is not a used token log!");
+            }
+
+            // Every record is checked, since a reserved slot may have been left empty by a crash while records after
+            // it were written. New records are appended after the last valid one. The table is sized from the file
+            // length up front, so loading never has to rehash.
+            long now = clock.seconds();
+            CompactUsedTokenStore memory = new CompactUsedTokenStore((int) ((size - HEADER_SIZE) / RECORD_SIZE / 2));
+            int end = HEADER_SIZE;
+            for(int offset = HEADER_SIZE ; offset + RECORD_SIZE <= size ; offset += RECORD_SIZE) {
+                long most = buffer.getLong(offset);
+                long least = buffer.getLong(offset + 8);
+                long expiresAt = buffer.getLong(offset + 16);
+                if(buffer.getLong(offset + 24) != check(most, least, expiresAt)) {
+                    continue;
+                }
+                if(expiresAt >= now) {
+                    memory.markUsed(most, least, expiresAt);
+                }
+                end = offset + RECORD_SIZE;
+            }
+
+            return new MappedUsedTokenStore(file, memory, channel, buffer, end);
+
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Records an ID as used. IDs with an expiry time at or before the epoch are rejected.
+     * @throws IllegalStateException If the log is full of live IDs, or could not be grown. The ID is not recorded.
+     */
+    @Override
+    public boolean markUsed(UUID id, long expiresAt) {
+
+        if(expiresAt <= 0) {
+            return false;
+        }
+
+        // Space in the log is reserved before the ID is recorded in memory, so an ID is never accepted without being
+        // written. A reserved record which is not written, because the ID was already used, is skipped on replay.
+        lock.readLock().lock();
+        try {
+            long offset = position.getAndAdd(RECORD_SIZE);
+            if(offset + RECORD_SIZE <= buffer.capacity()) {
+                if(!memory.markUsed(id, expiresAt)) {
+                    return false;
+                }
+                write(buffer, (int) offset, id, expiresAt);
+                return true;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return append(id, expiresAt);
+    }
+
+    @Override
+    public void purge(long now) {
+
+        memory.purge(now);
+
+        lock.writeLock().lock();
+        try {
+            long records = (Math.min(position.get(), buffer.capacity()) - HEADER_SIZE) / RECORD_SIZE;
+            if(records > 65536 && records > memory.size() * 2L) {
+                compact();
+            }
+            buffer.force();
+        } catch (IOException ex) {
+            LOGGER.warn("Unable to compact used token log {}!", file, ex);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        return memory.size();
+    }
+
+    public void flush() {
+        lock.writeLock().lock();
+        try {
+            buffer.force();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            buffer.force();
+            channel.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Called when a record did not fit in the current mapping. Reserved space past the end of the mapping is given
+    // up, and the ID is only recorded once the file has room for it.
+    private boolean append(UUID id, long expiresAt) {
+
+        lock.writeLock().lock();
+        try {
+            long offset = Math.min(position.get(), buffer.capacity());
+            offset = Math.max(HEADER_SIZE, offset - (offset - HEADER_SIZE) % RECORD_SIZE);
+            if(offset + RECORD_SIZE > buffer.capacity()) {
+                if(buffer.capacity() >= MAX_FILE_SIZE) {
+                    compact();
+                    offset = position.get();
+                } else {
+                    buffer = map(channel, Math.min(MAX_FILE_SIZE, (long) buffer.capacity() * 2));
+                }
+            }
+            if(offset + RECORD_SIZE > buffer.capacity()) {
+                throw new IllegalStateException("Used token log " + file + " is full!");
+            }
+
+            if(!memory.markUsed(id, expiresAt)) {
+                return false;
+            }
+            write(buffer, (int) offset, id, expiresAt);
+            position.set(offset + RECORD_SIZE);
+            return true;
+
+        } catch (IOException ex) {
+            throw new IllegalStateException("Unable to grow used token log " + file + "!", ex);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Must hold the write lock. If the live IDs do not fit in the largest log, the current log is kept.
+    private void compact() throws IOException {
+
+        long records = Math.max(memory.size(), 1);
+        if(HEADER_SIZE + records * RECORD_SIZE > MAX_FILE_SIZE) {
+            throw new IOException("Too many live IDs to fit in used token log " + file + "!");
+        }
+        long size = Math.min(MAX_FILE_SIZE, Math.max(MIN_FILE_SIZE, HEADER_SIZE + records * RECORD_SIZE * 2));
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        FileChannel newChannel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer newBuffer;
+        long[] end = { HEADER_SIZE };
+        try {
+            newBuffer = map(newChannel, size);
+            newBuffer.putInt(0, MAGIC);
+            newBuffer.putInt(4, VERSION);
+            memory.forEach((most, least, expiresAt) -> {
+                if(end[0] + RECORD_SIZE > newBuffer.capacity()) {
+                    throw new IllegalStateException("Used token log " + file + " is full!");
+                }
+                write(newBuffer, (int) end[0], new UUID(most, least), expiresAt);
+                end[0] += RECORD_SIZE;
+            });
+            newBuffer.force();
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException ex) {
+            newChannel.close();
+            throw ex;
+        }
+
+        channel.close();
+        channel = newChannel;
+        buffer = newBuffer;
+        position.set(end[0]);
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long size) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    private static void write(MappedByteBuffer buffer, int offset, UUID id, long expiresAt) {
+        long most = id.getMostSignificantBits();
+        long least = id.getLeastSignificantBits();
+        buffer.putLong(offset, most);
+        buffer.putLong(offset + 8, least);
+        buffer.putLong(offset + 16, expiresAt);
+        buffer.putLong(offset + 24, check(most, least, expiresAt));
+    }
+
+    // Never matches an all-zero record
+    private static long check(long most, long least, long expiresAt) {
+        long hash = mix(mix(mix(MAGIC, most), least), expiresAt);
+        return hash == 0 ? 1 : hash;
+    }
+
+    private static long mix(long hash, long value) {
+        hash = (hash ^ value) * 0x9E3779B97F4A7C15L;
+        return hash ^ (hash >>> 31);
+    }
+
+}
@@ -0,0 +1,331 @@
+package org.wallentines.jwt;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wallentines.mdcfg.serializer.SerializeResult;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * A read-only KeyStore backed by a single keyring file, which is memory-mapped when opened. The file holds a hashed
+ * index of every key, followed by the raw key data, so a lookup reads a few bytes of the mapping instead of opening a
+ * file per key. Keyrings are built from a {@link FileKeyStore} folder using {@link #pack(Path, Path)}.
+ * <br/>
+ * Keys are decoded on every lookup. Wrap this store in a caching layer if decoding is expensive for your key types.
+ * <br/>
+ * Every index entry is checked against the size of the file when it is opened, and lengths are checked again on each
+ * lookup, so a truncated or corrupted keyring is rejected instead of reading past the end of the mapping.
+ */
+public class PackedKeyStore implements KeyStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("PackedKeyStore");
+
+    // Layout: header (magic, version, entry count, slot count), then one 8-byte slot per index entry (hash, offset of
+    // the entry, or 0 if empty), then entries (extension length, extension, kid length, kid, key length, key data).
+    private static final int MAGIC = 0x4A574B52;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int SLOT_SIZE = 8;
+
+    private final MappedByteBuffer buffer;
+    private final Map<KeyType<?>, String> extensions;
+    private final Map<KeyType<?>, byte[]> extensionBytes;
+    private final int size;
+    private final int mask;
+
+    private PackedKeyStore(MappedByteBuffer buffer, Map<KeyType<?>, String> extensions) {
+        this.buffer = buffer;
+        this.extensions = Map.copyOf(extensions);
+        this.size = buffer.getInt(8);
+        this.mask = buffer.getInt(12) - 1;
+
+        Map<KeyType<?>, byte[]> extensionBytes = new HashMap<>();
+        for(Map.Entry<KeyType<?>, String> ent : extensions.entrySet()) {
+            extensionBytes.put(ent.getKey(), ent.getValue().getBytes(StandardCharsets.UTF_8));
+        }
+        this.extensionBytes = Map.copyOf(extensionBytes);
+    }
+
+    public static PackedKeyStore open(Path file) throws IOException {
+        return open(file, FileKeyStore.DEFAULT_TYPES);
+    }
+
+    /**
+     * Opens a keyring file.
+     * @param file The keyring file.
+     * @param validKeyTypes The file extension used for each key type when the keyring was packed.
+     * @return A new key store.
+     * @throws IOException If the file could not be read, or is not a keyring.
+     */
+    public static PackedKeyStore open(Path file, Map<KeyType<?>, String> validKeyTypes) throws IOException {
+
+        MappedByteBuffer buffer;
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if(channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("File " + file + " is not a keyring!");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        int slots = buffer.getInt(12);
+        if(buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || Integer.bitCount(slots) != 1
+                || HEADER_SIZE + (long) slots * SLOT_SIZE > buffer.limit()) {
+            throw new IOException("File " + file + " is not a keyring!");
+        }
+        if(!isValid(buffer, slots)) {
+            throw new IOException("Keyring " + file + " is corrupted!");
+        }
+
+        return new PackedKeyStore(buffer, validKeyTypes);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public <T> T getKey(String name, KeyType<T> type) {
+
+        byte[] extension = extensionBytes.get(type);
+        if(extension == null) {
+            LOGGER.warn("Requested key with unknown type {}", type);
+            return null;
+        }
+
+        byte[] kid = name.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(kid, extension);
+        for(int probe = 0, i = hash & mask ; probe <= mask ; probe++, i = (i + 1) & mask) {
+
+            int slot = HEADER_SIZE + i * SLOT_SIZE;
+            int offset = buffer.getInt(slot + 4);
+            if(offset == 0) {
+                return null;
+            }
+            if(buffer.getInt(slot) != hash) {
+                continue;
+            }
+
+            offset = matches(offset, extension);
+            if(offset == -1) {
+                continue;
+            }
+            offset = matches(offset, kid);
+            if(offset == -1) {
+                continue;
+            }
+
+            int length = offset + 4 <= buffer.limit() ? buffer.getInt(offset) : -1;
+            if(length < 0 || length > buffer.limit() - offset - 4) {
+                LOGGER.warn("Keyring entry for key {} is corrupted!", name);
+                return null;
+            }
+
+            byte[] data = new byte[length];
+            buffer.get(offset + 4, data);
+
+            SerializeResult<T> key = type.create(data);
+            if(!key.isComplete()) {
+                LOGGER.warn("Unable to read key!", key.getError());
+                return null;
+            }
+            return key.getOrThrow();
+        }
+        return null;
+    }
+
+    @Override
+    public <T> void setKey(String name, KeyType<T> type, T key) {
+        LOGGER.warn("Attempt to set key {} in a read-only keyring", name);
+    }
+
+    @Override
+    public <T> void clearKey(String name, KeyType<T> type) {
+        LOGGER.warn("Attempt to clear key {} in a read-only keyring", name);
+    }
+
+    // Compares a length-prefixed string in the file to the given bytes, and returns the offset after it if they match
+    private int matches(int offset, byte[] value) {
+        if(offset < 0 || offset > buffer.limit() - 2) {
+            return -1;
+        }
+        int length = buffer.getShort(offset) & 0xFFFF;
+        if(length != value.length || length > buffer.limit() - offset - 2) {
+            return -1;
+        }
+        offset += 2;
+        for(int i = 0 ; i < length ; i++) {
+            if(buffer.get(offset + i) != value[i]) {
+                return -1;
+            }
+        }
+        return offset + length;
+    }
+
+    public static int pack(Path keyFolder, Path output) throws IOException {
+        return pack(keyFolder, output, FileKeyStore.DEFAULT_TYPES);
+    }
+
+    /**
+     * Writes every valid key file in a {@link FileKeyStore} folder to a keyring file.
+     * @param keyFolder The folder to read keys from.
+     * @param output The keyring file to write. It is replaced atomically if it already exists.
+     * @param validKeyTypes The file extension used for each key type.
+     * @return The number of keys written.
+     * @throws IOException If the folder could not be read, or the keyring could not be written.
+     */
+    public static int pack(Path keyFolder, Path output, Map<KeyType<?>, String> validKeyTypes) throws IOException {
+
+        Map<String, KeyType<?>> types = new HashMap<>();
+        for(Map.Entry<KeyType<?>, String> ent : validKeyTypes.entrySet()) {
+            types.put(ent.getValue(), ent.getKey());
+        }
+
+        List<Path> files;
+        try(Stream<Path> stream = Files.list(keyFolder)) {
+            files = stream.sorted().toList();
+        }
+
+        List<Entry> entries = new ArrayList<>();
+        long dataSize = 0;
+        for(Path file : files) {
+
+            String fileName = file.getFileName().toString();
+            int index = fileName.lastIndexOf('.');
+            KeyType<?> type = index < 1 ? null : types.get(fileName.substring(index + 1));
+            if(type == null || !Files.isRegularFile(file)) {
+                continue;
+            }
+
+            byte[] data = Files.readAllBytes(file);
+            if(!type.create(data).isComplete()) {
+                LOGGER.warn("Skipping invalid key file {}", fileName);
+                continue;
+            }
+
+            Entry entry = new Entry(
+                    fileName.substring(index + 1).getBytes(StandardCharsets.UTF_8),
+                    fileName.substring(0, index).getBytes(StandardCharsets.UTF_8),
+                    data);
+            if(entry.kid.length > 0xFFFF || entry.extension.length > 0xFFFF) {
+                LOGGER.warn("Skipping key file {} with a name which is too long", fileName);
+                continue;
+            }
+            entries.add(entry);
+            dataSize += entry.size();
+        }
+
+        int slots = Integer.highestOneBit(Math.max(1, entries.size() * 2 - 1)) << 1;
+        long totalSize = HEADER_SIZE + (long) slots * SLOT_SIZE + dataSize;
+        if(totalSize > Integer.MAX_VALUE) {
+            throw new IOException("Too many keys to fit in a keyring!");
+        }
+
+        Path temp = output.resolveSibling(output.getFileName() + ".tmp");
+        try(FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, totalSize);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(8, entries.size());
+            buffer.putInt(12, slots);
+
+            int mask = slots - 1;
+            int offset = HEADER_SIZE + slots * SLOT_SIZE;
+            for(Entry entry : entries) {
+
+                int hash = hash(entry.kid, entry.extension);
+                int slot = hash & mask;
+                while(buffer.getInt(HEADER_SIZE + slot * SLOT_SIZE + 4) != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                buffer.putInt(HEADER_SIZE + slot * SLOT_SIZE, hash);
+                buffer.putInt(HEADER_SIZE + slot * SLOT_SIZE + 4, offset);
+
+                buffer.putShort(offset, (short) entry.extension.length);
+                buffer.put(offset + 2, entry.extension);
+                offset += 2 + entry.extension.length;
+                buffer.putShort(offset, (short) entry.kid.length);
+                buffer.put(offset + 2, entry.kid);
+                offset += 2 + entry.kid.length;
+                buffer.putInt(offset, entry.data.length);
+                buffer.put(offset + 4, entry.data);
+                offset += 4 + entry.data.length;
+            }
+            buffer.force();
+        }
+
+        Files.move(temp, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return entries.size();
+    }
+
+    // Checks that the entry count leaves an empty slot to end each probe, and that every entry lies inside the file
+    private static boolean isValid(MappedByteBuffer buffer, int slots) {
+
+        int entries = buffer.getInt(8);
+        if(entries < 0 || entries >= slots) {
+            return false;
+        }
+
+        long limit = buffer.limit();
+        long dataStart = HEADER_SIZE + (long) slots * SLOT_SIZE;
+        int found = 0;
+        for(int i = 0 ; i < slots ; i++) {
+            int offset = buffer.getInt(HEADER_SIZE + i * SLOT_SIZE + 4);
+            if(offset == 0) {
+                continue;
+            }
+            if(offset < dataStart) {
+                return false;
+            }
+
+            long end = offset;
+            for(int part = 0 ; part < 2 ; part++) {
+                if(end + 2 > limit) {
+                    return false;
+                }
+                end += 2 + (buffer.getShort((int) end) & 0xFFFF);
+            }
+            if(end + 4 > limit) {
+                return false;
+            }
+            int length = buffer.getInt((int) end);
+            if(length < 0 || end + 4 + length > limit) {
+                return false;
+            }
+            found++;
+        }
+        return found == entries;
+    }
+
+    private static int hash(byte[] kid, byte[] extension) {
+        int hash = 1;
+        for(byte b : extension) {
+            hash = 31 * hash + b;
+        }
+        for(byte b : kid) {
+            hash = 31 * hash + b;
+        }
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        return hash ^ (hash >>> 13);
+    }
+
+    private record Entry(byte[] extension, byte[] kid, byte[] data) {
+        int size() {
+            return 8 + extension.length + kid.length + data.length;
+        }
+    }
+
+}
@@ -0,0 +1,113 @@
+package org.wallentines.jwt;
+
+import org.jetbrains.annotations.NotNull;
+import org.wallentines.mdcfg.ConfigSection;
+import org.wallentines.mdcfg.codec.JSONCodec;
+import org.wallentines.mdcfg.serializer.ConfigContext;
+import org.wallentines.mdcfg.serializer.SerializeResult;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * A compact-serialized token which has been split into its parts, with its JOSE header decoded. Readers accept a
+ * ParsedToken so the header is only decoded once, no matter how many stages look at it.
+ */
+public class ParsedToken {
+
+    public static final int MAX_PARTS = 5;
+
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final String token;
+    private final byte[] ascii;
+    private final int[] starts;
+    private final int[] ends;
+    private final ConfigSection header;
+
+    private ParsedToken(String token, byte[] ascii, int[] starts, int[] ends, ConfigSection header) {
+        this.token = token;
+        this.ascii = ascii;
+        this.starts = starts;
+        this.ends = ends;
+        this.header = header;
+    }
+
+    public static @NotNull SerializeResult<ParsedToken> parse(String token) {
+
+        byte[] ascii = token.getBytes(StandardCharsets.US_ASCII);
+
+        int[] starts = new int[MAX_PARTS];
+        int[] ends = new int[MAX_PARTS];
+        int parts = 0;
+        int start = 0;
+        for(int i = 0 ; i <= ascii.length ; i++) {
+            if(i == ascii.length || ascii[i] == '.') {
+                if(parts == MAX_PARTS) {
+                    return SerializeResult.failure("Found malformed JWT!");
+                }
+                starts[parts] = start;
+                ends[parts] = i;
+                parts++;
+                start = i + 1;
+            }
+        }
+        if(parts < 2) {
+            return SerializeResult.failure("Found malformed JWT!");
+        }
+
+        starts = Arrays.copyOf(starts, parts);
+        ends = Arrays.copyOf(ends, parts);
+
+        ConfigSection header;
+        try {
+            header = JSONCodec.minified().decode(ConfigContext.INSTANCE, new ByteArrayInputStream(decode(ascii, starts[0], ends[0])), StandardCharsets.UTF_8).asSection();
+        } catch (Exception ex) {
+            return SerializeResult.failure("Unable to read JWT header!", ex);
+        }
+
+        return SerializeResult.success(new ParsedToken(token, ascii, starts, ends, header));
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public ConfigSection getHeader() {
+        return header;
+    }
+
+    public boolean isEncrypted() {
+        return header.hasString("enc");
+    }
+
+    public int getPartCount() {
+        return starts.length;
+    }
+
+    public String getPart(int index) {
+        return token.substring(starts[index], ends[index]);
+    }
+
+    public byte[] getPartBytes(int index) {
+        return getBytes(index, index);
+    }
+
+    public byte[] getBytes(int firstPart, int lastPart) {
+        return Arrays.copyOfRange(ascii, starts[firstPart], ends[lastPart]);
+    }
+
+    public byte[] decodePart(int index) {
+        return decode(ascii, starts[index], ends[index]);
+    }
+
+    private static byte[] decode(byte[] ascii, int start, int end) {
+        ByteBuffer out = DECODER.decode(ByteBuffer.wrap(ascii, start, end - start));
+        byte[] array = out.array();
+        return out.limit() == array.length ? array : Arrays.copyOf(array, out.limit());
+    }
+
+}
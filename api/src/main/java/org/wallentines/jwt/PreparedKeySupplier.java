@@ -0,0 +1,107 @@
+package org.wallentines.jwt;
+
+import org.wallentines.mdcfg.ConfigSection;
+
+import java.security.Key;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A KeySupplier which keeps the codecs it creates, keyed by algorithm and the identity of the key object, so that later
+ * tokens using the same key skip key setup. The wrapped supplier is still asked for the key on each token, so rotated
+ * keys are picked up as long as the wrapped supplier returns a new object for them. Wrap suppliers whose keys are
+ * cached, such as those from a {@link FileKeyStore} or {@link CachingKeyStore}, to get the most reuse.
+ * <br/>
+ * Header values such as the key ID are not part of the cache key, so tokens cannot grow the cache by naming made-up
+ * key IDs. The cache is also bounded, and is cleared when it fills up.
+ */
+public class PreparedKeySupplier implements KeySupplier {
+
+    private static final int MAX_CODECS = 1024;
+
+    private final KeySupplier delegate;
+    private final Map<CodecKey, HashCodec<?>> hashCodecs = new ConcurrentHashMap<>();
+    private final Map<CodecKey, KeyCodec<?, ?>> keyCodecs = new ConcurrentHashMap<>();
+
+    public PreparedKeySupplier(KeySupplier delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public <T> T getKey(ConfigSection joseHeader, KeyType<T> type) {
+        return delegate.getKey(joseHeader, type);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> HashCodec<T> getHashCodec(ConfigSection joseHeader, HashCodec.Algorithm<T> alg) {
+
+        T key = delegate.getKey(joseHeader, alg.getKeyType());
+        if(key == null) {
+            return new HashCodec<>(alg, null);
+        }
+
+        CodecKey codecKey = new CodecKey(alg, key, null);
+        HashCodec<T> cached = (HashCodec<T>) hashCodecs.get(codecKey);
+        if(cached != null) {
+            return cached;
+        }
+
+        HashCodec<T> out = new HashCodec<>(alg, key);
+        put(hashCodecs, codecKey, out);
+        return out;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <E extends Key, D extends Key> KeyCodec<E, D> getKeyCodec(ConfigSection joseHeader, KeyCodec.Algorithm<E, D> alg) {
+
+        E encKey = delegate.getKey(joseHeader, alg.getEncryptionKeyType());
+        D decKey = delegate.getKey(joseHeader, alg.getDecryptionKeyType());
+        if(encKey == null && decKey == null) {
+            return new KeyCodec<>(alg, null, null);
+        }
+
+        CodecKey codecKey = new CodecKey(alg, encKey, decKey);
+        KeyCodec<E, D> cached = (KeyCodec<E, D>) keyCodecs.get(codecKey);
+        if(cached != null) {
+            return cached;
+        }
+
+        KeyCodec<E, D> out = new KeyCodec<>(alg, encKey, decKey);
+        put(keyCodecs, codecKey, out);
+        return out;
+    }
+
+    public void clear() {
+        hashCodecs.clear();
+        keyCodecs.clear();
+    }
+
+    public int size() {
+        return hashCodecs.size() + keyCodecs.size();
+    }
+
+    // Suppliers which create a new key object for every lookup would otherwise fill the cache
+    private static <V> void put(Map<CodecKey, V> map, CodecKey key, V value) {
+        if(map.size() >= MAX_CODECS) {
+            map.clear();
+        }
+        map.put(key, value);
+    }
+
+    // Compares keys by identity, since key objects such as byte arrays do not all compare by value
+    private record CodecKey(Object alg, Object first, Object second) {
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof CodecKey other && alg == other.alg && first == other.first && second == other.second;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * System.identityHashCode(alg) + System.identityHashCode(first)) + System.identityHashCode(second);
+        }
+    }
+
+}
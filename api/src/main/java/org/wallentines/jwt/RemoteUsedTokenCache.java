@@ -0,0 +1,285 @@
+package org.wallentines.jwt;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A UsedTokenCache which checks token IDs against a shared {@link UsedTokenServer}, so a one-time token can only be
+ * used once across every process connected to that server. Requests from all threads are queued and written to a
+ * single connection in batches, and responses are read back in order while later batches are still being sent, so
+ * a burst of tokens costs about one round-trip rather than one per token.
+ * <br/>
+ * If the server cannot be reached, tokens are rejected, and a new connection is attempted for the next batch.
+ */
+public class RemoteUsedTokenCache implements UsedTokenCache, Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("RemoteUsedTokenCache");
+    private static final int MAX_BATCH = 1024;
+
+    private final String idClaim;
+    private final InetSocketAddress address;
+    private final Duration timeout;
+    private final LinkedBlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final Thread writeThread;
+    private volatile boolean closed;
+    private volatile Connection connection;
+
+    public RemoteUsedTokenCache(String idClaim, InetSocketAddress address) {
+        this(idClaim, address, Duration.ofSeconds(5));
+    }
+
+    /**
+     * Creates a cache which connects to a server at the given address. The connection is made lazily.
+     * @param idClaim The claim which holds the token ID.
+     * @param address The address of the server.
+     * @param timeout How long {@link #validate(JWT)} will wait for a response before rejecting a token. This is also
+     *                the timeout for connecting, and for a response while requests are outstanding. A connection which
+     *                times out is closed, and the next batch is sent on a new one.
+     */
+    public RemoteUsedTokenCache(String idClaim, InetSocketAddress address, Duration timeout) {
+        this.idClaim = idClaim;
+        this.address = address;
+        this.timeout = timeout;
+
+        this.writeThread = new Thread(this::writeLoop, "RemoteUsedTokenCache Writer");
+        this.writeThread.setDaemon(true);
+        this.writeThread.start();
+    }
+
+    @Override
+    public String getIdClaim() {
+        return idClaim;
+    }
+
+    public InetSocketAddress getAddress() {
+        return address;
+    }
+
+    @Override
+    public boolean validate(JWT jwt, long leeway) {
+        try {
+            return validateAsync(jwt, leeway).get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException ex) {
+            LOGGER.warn("Unable to check a one-time token with {}!", address, ex);
+            return false;
+        } catch (TimeoutException ex) {
+            // The server has stopped answering, so the next batch should go to a new connection
+            LOGGER.warn("Timed out checking a one-time token with {}!", address);
+            Connection current = connection;
+            if(current != null) {
+                current.fail(new IOException("Timed out waiting for " + address + "!"));
+            }
+            return false;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Records a token as used without waiting for the server. Callers with many tokens to check should call this for
+     * each of them before waiting on any of the results.
+     * @param jwt The token to check.
+     * @return A future which completes with whether the token had not been used before, or completes exceptionally
+     * if the server could not be reached.
+     */
+    public CompletableFuture<Boolean> validateAsync(JWT jwt) {
+        return validateAsync(jwt, 0);
+    }
+
+    /**
+     * Records a token as used without waiting for the server. See {@link UsedTokenCache#validate(JWT, long)}.
+     * @param jwt The token to check.
+     * @param leeway How many seconds past its expiry time the token may still be accepted.
+     * @return A future which completes with whether the token had not been used before, or completes exceptionally
+     * if the server could not be reached.
+     */
+    public CompletableFuture<Boolean> validateAsync(JWT jwt, long leeway) {
+
+        long exp = jwt.getExpiresAtSeconds();
+        if(exp == JWT.NO_TIME) {
+            return CompletableFuture.completedFuture(false);
+        }
+
+        UUID tokenId = UsedTokenCache.getTokenId(jwt, idClaim);
+        if(tokenId == null) {
+            return CompletableFuture.completedFuture(false);
+        }
+
+        if(closed) {
+            return CompletableFuture.failedFuture(new IOException("Cache is closed!"));
+        }
+
+        Request request = new Request(tokenId, UsedTokenCache.retainUntil(exp, leeway));
+        queue.add(request);
+        return request.result;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        writeThread.interrupt();
+    }
+
+    private void writeLoop() {
+
+        List<Request> batch = new ArrayList<>();
+        while(!closed) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException ex) {
+                break;
+            }
+            queue.drainTo(batch, MAX_BATCH - 1);
+
+            try {
+                if(connection == null || connection.failed != null) {
+                    connection = new Connection(address, (int) Math.min(Integer.MAX_VALUE, Math.max(1, timeout.toMillis())));
+                }
+                connection.send(batch);
+            } catch (IOException ex) {
+                if(connection != null) {
+                    connection.fail(ex);
+                    connection = null;
+                }
+                for(Request request : batch) {
+                    request.result.completeExceptionally(ex);
+                }
+            }
+            batch.clear();
+        }
+
+        IOException ex = new IOException("Cache is closed!");
+        if(connection != null) {
+            connection.fail(ex);
+        }
+        for(Request request : queue) {
+            request.result.completeExceptionally(ex);
+        }
+    }
+
+    private record Request(UUID id, long expiresAt, CompletableFuture<Boolean> result) {
+        Request(UUID id, long expiresAt) {
+            this(id, expiresAt, new CompletableFuture<>());
+        }
+    }
+
+    private static class Connection {
+
+        private final Socket socket;
+        private final DataOutputStream out;
+        private final ArrayDeque<Request> inFlight = new ArrayDeque<>();
+        private volatile IOException failed;
+
+        Connection(InetSocketAddress address, int timeout) throws IOException {
+            this.socket = new Socket();
+            try {
+                socket.setTcpNoDelay(true);
+                socket.setSoTimeout(timeout);
+                socket.connect(address, timeout);
+                this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), UsedTokenServer.REQUEST_SIZE * MAX_BATCH));
+            } catch (IOException ex) {
+                socket.close();
+                throw ex;
+            }
+
+            Thread readThread = new Thread(this::readLoop, "RemoteUsedTokenCache Reader");
+            readThread.setDaemon(true);
+            readThread.start();
+        }
+
+        void send(List<Request> batch) throws IOException {
+
+            // Requests are queued for the reader before they are written, so a response can never arrive first
+            synchronized (this) {
+                if(failed != null) {
+                    throw failed;
+                }
+                inFlight.addAll(batch);
+            }
+
+            for(Request request : batch) {
+                out.writeByte(UsedTokenServer.OP_MARK_USED);
+                out.writeLong(request.id.getMostSignificantBits());
+                out.writeLong(request.id.getLeastSignificantBits());
+                out.writeLong(request.expiresAt);
+            }
+            out.flush();
+        }
+
+        void fail(IOException ex) {
+            List<Request> pending;
+            synchronized (this) {
+                if(failed != null) {
+                    return;
+                }
+                failed = ex;
+                pending = new ArrayList<>(inFlight);
+                inFlight.clear();
+            }
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // Ignore
+            }
+            for(Request request : pending) {
+                request.result.completeExceptionally(ex);
+            }
+        }
+
+        private void readLoop() {
+            try {
+                InputStream in = new BufferedInputStream(socket.getInputStream(), MAX_BATCH);
+                while(true) {
+                    int response;
+                    try {
+                        response = in.read();
+                    } catch (SocketTimeoutException ex) {
+                        // An idle connection is fine, but a server which has stopped answering is not
+                        synchronized (this) {
+                            if(inFlight.isEmpty()) {
+                                continue;
+                            }
+                        }
+                        throw ex;
+                    }
+                    if(response == -1) {
+                        throw new IOException("Connection closed by server!");
+                    }
+
+                    Request request;
+                    synchronized (this) {
+                        request = inFlight.poll();
+                    }
+                    if(request == null) {
+                        throw new IOException("Received an unexpected response!");
+                    }
+                    request.result.complete(response == UsedTokenServer.RESPONSE_ACCEPTED);
+                }
+            } catch (IOException ex) {
+                fail(ex);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,57 @@
+package org.wallentines.jwt;
+
+import org.wallentines.mdcfg.ConfigSection;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Shares one lookup between every caller asking for the same key while it is in flight. Each caller receives its own
+// copy of the shared future, so cancelling or completing it does not affect the other callers.
+class SharedAsyncKeySupplier implements AsyncKeySupplier {
+
+    private final AsyncKeySupplier delegate;
+    private final Map<KeyLookup, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    SharedAsyncKeySupplier(AsyncKeySupplier delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> getKeyAsync(ConfigSection joseHeader, KeyType<T> type) {
+
+        KeyLookup lookup = new KeyLookup(
+                type,
+                joseHeader.hasString("kid") ? joseHeader.getString("kid") : null,
+                joseHeader.hasString("alg") ? joseHeader.getString("alg") : null,
+                joseHeader.hasString("enc") ? joseHeader.getString("enc") : null);
+
+        CompletableFuture<Object> out = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(lookup, out);
+        if(existing != null) {
+            return (CompletableFuture<T>) (CompletableFuture<?>) existing.copy();
+        }
+
+        CompletableFuture<T> load;
+        try {
+            load = delegate.getKeyAsync(joseHeader, type);
+        } catch (RuntimeException ex) {
+            load = CompletableFuture.failedFuture(ex);
+        }
+
+        // Removed before completing, so callers which see the result never join a finished lookup
+        load.whenComplete((key, ex) -> {
+            inFlight.remove(lookup, out);
+            if(ex == null) {
+                out.complete(key);
+            } else {
+                out.completeExceptionally(ex);
+            }
+        });
+        return (CompletableFuture<T>) (CompletableFuture<?>) out.copy();
+    }
+
+    private record KeyLookup(KeyType<?> type, String kid, String alg, String enc) { }
+
+}
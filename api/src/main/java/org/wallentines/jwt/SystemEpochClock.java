@@ -0,0 +1,32 @@
+package org.wallentines.jwt;
+
+import java.util.concurrent.locks.LockSupport;
+
+// Started on first use. The thread wakes just after each second begins, and at least every 100 ms in case the wall
+// clock is adjusted.
+final class SystemEpochClock implements EpochClock {
+
+    static final SystemEpochClock INSTANCE = new SystemEpochClock();
+
+    private volatile long seconds = Math.floorDiv(System.currentTimeMillis(), 1000);
+
+    private SystemEpochClock() {
+        Thread thread = new Thread(this::run, "EpochClock Ticker");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public long seconds() {
+        return seconds;
+    }
+
+    private void run() {
+        while(true) {
+            long now = System.currentTimeMillis();
+            seconds = Math.floorDiv(now, 1000);
+            LockSupport.parkNanos(Math.min(100, 1001 - Math.floorMod(now, 1000)) * 1_000_000L);
+        }
+    }
+
+}
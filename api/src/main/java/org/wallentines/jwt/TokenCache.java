@@ -0,0 +1,156 @@
+package org.wallentines.jwt;
+
+import org.wallentines.mdcfg.serializer.SerializeResult;
+
+import java.time.Clock;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of tokens which have already been read and verified by a single KeySupplier, keyed by their compact
+ * form. Entries expire at the token's "exp" claim, and tokens without one are never cached. When the cache is full,
+ * the least recently used entries are evicted. The cache is split into independently locked segments, so it can be
+ * shared by many threads.
+ * <br/>
+ * Cached tokens are shared between callers, so their header and payload must not be modified. Tokens stay cached after
+ * their key is removed from the KeySupplier, so call {@link #clear()} after revoking a key.
+ */
+public class TokenCache {
+
+    private static final int MAX_SEGMENTS = 16;
+
+    private final KeySupplier keySupplier;
+    private final EpochClock clock;
+    private final Segment[] segments;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public TokenCache(KeySupplier keySupplier, int maxSize) {
+        this(keySupplier, maxSize, EpochClock.system());
+    }
+
+    public TokenCache(KeySupplier keySupplier, int maxSize, Clock clock) {
+        this(keySupplier, maxSize, EpochClock.of(clock));
+    }
+
+    public TokenCache(KeySupplier keySupplier, int maxSize, EpochClock clock) {
+        if(maxSize < 1) {
+            throw new IllegalArgumentException("Cache size must be positive!");
+        }
+        this.keySupplier = keySupplier;
+        this.clock = clock;
+
+        int segmentCount = Math.min(MAX_SEGMENTS, Integer.highestOneBit(maxSize));
+        int segmentSize = (maxSize + segmentCount - 1) / segmentCount;
+
+        this.segments = new Segment[segmentCount];
+        for(int i = 0 ; i < segmentCount ; i++) {
+            segments[i] = new Segment(segmentSize);
+        }
+    }
+
+    public SerializeResult<JWT> read(String token) {
+
+        JWT cached = get(token);
+        if(cached != null) {
+            return SerializeResult.success(cached);
+        }
+
+        SerializeResult<JWT> out = JWTReader.readAny(token, keySupplier);
+        if(out.isComplete()) {
+            put(token, out.getOrThrow());
+        }
+        return out;
+    }
+
+    public JWT get(String token) {
+
+        Segment segment = segment(token);
+        CachedToken cached;
+        synchronized (segment) {
+            cached = segment.get(token);
+            if(cached != null && cached.expiresAt < clock.seconds()) {
+                segment.remove(token);
+                cached = null;
+            }
+        }
+
+        if(cached == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return cached.jwt;
+    }
+
+    public void invalidate(String token) {
+        Segment segment = segment(token);
+        synchronized (segment) {
+            segment.remove(token);
+        }
+    }
+
+    public void clear() {
+        for(Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    public int size() {
+        int out = 0;
+        for(Segment segment : segments) {
+            synchronized (segment) {
+                out += segment.size();
+            }
+        }
+        return out;
+    }
+
+    public CacheStats getStats() {
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum());
+    }
+
+    private void put(String token, JWT jwt) {
+
+        long exp = jwt.getExpiresAtSeconds();
+        if(exp == JWT.NO_TIME || exp < clock.seconds()) {
+            return;
+        }
+
+        Segment segment = segment(token);
+        synchronized (segment) {
+            segment.put(token, new CachedToken(jwt, exp));
+        }
+    }
+
+    private Segment segment(String token) {
+        int hash = token.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (segments.length - 1)];
+    }
+
+    private record CachedToken(JWT jwt, long expiresAt) { }
+
+    private class Segment extends LinkedHashMap<String, CachedToken> {
+
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedToken> eldest) {
+            if(size() > capacity) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+
+}
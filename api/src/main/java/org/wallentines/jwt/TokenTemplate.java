@@ -0,0 +1,232 @@
+package org.wallentines.jwt;
+
+import org.wallentines.mdcfg.ConfigSection;
+import org.wallentines.mdcfg.codec.JSONCodec;
+import org.wallentines.mdcfg.serializer.ConfigContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable payload template for issuing many tokens which share most of their claims. The static claims are
+ * serialized once, when the template is created, and the claims which change per token are spliced in after them
+ * when a payload is written. The resulting JSON is identical to that of a {@link JWTBuilder} which sets the static
+ * claims, followed by the per-token claims in the order they were declared.
+ * <br/>
+ * Payloads are written by a {@link Writer}, which reuses its buffer between tokens. Templates can be shared between
+ * threads, but each thread needs its own writer.
+ */
+public class TokenTemplate {
+
+    private final byte[] staticPart;
+    private final boolean hasStaticClaims;
+    private final byte[] separator;
+    private final String[] claims;
+    private final byte[][] claimPrefixes;
+    private final Map<String, Integer> indices;
+    private final boolean plainLongs;
+    private final boolean plainStrings;
+
+    private TokenTemplate(ConfigSection staticClaims, String[] claims) {
+
+        this.claims = claims;
+        this.indices = new HashMap<>();
+        for(int i = 0 ; i < claims.length ; i++) {
+            if(staticClaims.has(claims[i]) || indices.put(claims[i], i) != null) {
+                throw new IllegalArgumentException("Claim " + claims[i] + " is declared more than once!");
+            }
+        }
+
+        // The static claims are kept without their closing brace, so the per-token claims can be appended
+        String encoded = encode(staticClaims);
+        this.staticPart = encoded.substring(0, encoded.lastIndexOf('}')).getBytes(StandardCharsets.UTF_8);
+        this.hasStaticClaims = !staticClaims.getKeys().isEmpty();
+
+        String pair = encode(new ConfigSection().with("a", 0).with("b", 0));
+        this.separator = pair.substring(pair.indexOf('0') + 1, pair.indexOf("\"b\"")).getBytes(StandardCharsets.UTF_8);
+
+        this.claimPrefixes = new byte[claims.length][];
+        for(int i = 0 ; i < claims.length ; i++) {
+            claimPrefixes[i] = keyPrefix(claims[i]).getBytes(StandardCharsets.UTF_8);
+        }
+
+        // Values are written directly when the codec is known to write them the same way
+        this.plainLongs = encodeValue(new ConfigSection().with("v", -1234567890123L)).equals("-1234567890123");
+        this.plainStrings = encodeValue(new ConfigSection().with("v", "Ab1 -_.:")).equals("\"Ab1 -_.:\"");
+    }
+
+    /**
+     * Creates a template.
+     * @param staticClaims A builder holding the claims which are the same for every token.
+     * @param dynamicClaims The names of the claims which change per token, in the order they should be written.
+     * @return A new template.
+     */
+    public static TokenTemplate of(JWTBuilder staticClaims, String... dynamicClaims) {
+        return new TokenTemplate(staticClaims.getPayload().copy(), dynamicClaims.clone());
+    }
+
+    public List<String> getDynamicClaims() {
+        return List.of(claims);
+    }
+
+    public Writer writer() {
+        return new Writer();
+    }
+
+    private static String encode(ConfigSection section) {
+        try(ByteArrayOutputStream bos = new ByteArrayOutputStream()) {
+            JSONCodec.minified().encode(ConfigContext.INSTANCE, section, bos);
+            return bos.toString(StandardCharsets.UTF_8).trim();
+        } catch (IOException ex) {
+            throw new IllegalStateException("Unable to encode claims!", ex);
+        }
+    }
+
+    // Everything the codec writes for an entry before its value
+    private static String keyPrefix(String key) {
+        String json = encode(new ConfigSection().with(key, 0));
+        return json.substring(1, json.lastIndexOf('0'));
+    }
+
+    // The value of the entry "v", exactly as the codec writes it
+    private static String encodeValue(ConfigSection entry) {
+        String json = encode(entry);
+        return json.substring(1 + keyPrefix("v").length(), json.lastIndexOf('}'));
+    }
+
+    /**
+     * Writes payloads for a template. Set the per-token claims, call {@link #toByteArray()}, then {@link #reset()}
+     * before the next token. Claims which are not set are left out. Writers are not thread-safe.
+     */
+    public class Writer {
+
+        private final byte[][] values = new byte[claims.length][];
+        private final long[] longs = new long[claims.length];
+        private final boolean[] isLong = new boolean[claims.length];
+        private byte[] buffer = new byte[staticPart.length + 256];
+
+        public Writer set(String claim, String value) {
+            int index = index(claim);
+            isLong[index] = false;
+            if(plainStrings && isPlain(value)) {
+                byte[] out = new byte[value.length() + 2];
+                out[0] = '"';
+                for(int i = 0 ; i < value.length() ; i++) {
+                    out[i + 1] = (byte) value.charAt(i);
+                }
+                out[out.length - 1] = '"';
+                values[index] = out;
+            } else {
+                values[index] = encodeValue(new ConfigSection().with("v", value)).getBytes(StandardCharsets.UTF_8);
+            }
+            return this;
+        }
+
+        public Writer set(String claim, long value) {
+            int index = index(claim);
+            if(plainLongs) {
+                longs[index] = value;
+                isLong[index] = true;
+                values[index] = null;
+            } else {
+                isLong[index] = false;
+                values[index] = encodeValue(new ConfigSection().with("v", value)).getBytes(StandardCharsets.UTF_8);
+            }
+            return this;
+        }
+
+        public Writer set(String claim, boolean value) {
+            int index = index(claim);
+            isLong[index] = false;
+            values[index] = encodeValue(new ConfigSection().with("v", value)).getBytes(StandardCharsets.UTF_8);
+            return this;
+        }
+
+        public Writer reset() {
+            Arrays.fill(values, null);
+            Arrays.fill(isLong, false);
+            return this;
+        }
+
+        /**
+         * Writes the payload JSON.
+         * @return The UTF-8 bytes of the payload.
+         */
+        public byte[] toByteArray() {
+
+            int length = append(0, staticPart);
+            boolean separate = hasStaticClaims;
+            for(int i = 0 ; i < claims.length ; i++) {
+                if(values[i] == null && !isLong[i]) {
+                    continue;
+                }
+                if(separate) {
+                    length = append(length, separator);
+                }
+                length = append(length, claimPrefixes[i]);
+                length = isLong[i] ? appendLong(length, longs[i]) : append(length, values[i]);
+                separate = true;
+            }
+
+            ensure(length + 1)[length++] = '}';
+            return Arrays.copyOf(buffer, length);
+        }
+
+        private int index(String claim) {
+            Integer index = indices.get(claim);
+            if(index == null) {
+                throw new IllegalArgumentException("Claim " + claim + " was not declared in the template!");
+            }
+            return index;
+        }
+
+        private byte[] ensure(int length) {
+            if(buffer.length < length) {
+                buffer = Arrays.copyOf(buffer, Math.max(length, buffer.length * 2));
+            }
+            return buffer;
+        }
+
+        private int append(int offset, byte[] bytes) {
+            System.arraycopy(bytes, 0, ensure(offset + bytes.length), offset, bytes.length);
+            return offset + bytes.length;
+        }
+
+        private int appendLong(int offset, long value) {
+            if(value == Long.MIN_VALUE) {
+                return append(offset, Long.toString(value).getBytes(StandardCharsets.US_ASCII));
+            }
+            ensure(offset + 20);
+            if(value < 0) {
+                buffer[offset++] = '-';
+                value = -value;
+            }
+            int digits = 1;
+            for(long v = value ; v >= 10 ; v /= 10) {
+                digits++;
+            }
+            for(int i = offset + digits - 1 ; i >= offset ; i--) {
+                buffer[i] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+            return offset + digits;
+        }
+
+        // Strings made only of these characters are never escaped by a JSON encoder
+        private boolean isPlain(String value) {
+            for(int i = 0 ; i < value.length() ; i++) {
+                char c = value.charAt(i);
+                if(!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == ' ' || c == '-' || c == '_' || c == '.' || c == ':')) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+}
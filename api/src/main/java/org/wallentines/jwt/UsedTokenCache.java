@@ -1,70 +1,66 @@
 package org.wallentines.jwt;
 
-import org.jetbrains.annotations.NotNull;
-import org.wallentines.mdcfg.serializer.Serializer;
+import org.wallentines.mdcfg.ConfigObject;
 
-import java.time.Clock;
-import java.time.Instant;
-import java.util.HashSet;
-import java.util.PriorityQueue;
 import java.util.UUID;
 
-public class UsedTokenCache {
-
-    private final String idClaim;
-    private final Clock timeoutClock;
-    private final HashSet<UUID> current = new HashSet<>();
-
-    private final PriorityQueue<UsedToken> cache;
-
-    public UsedTokenCache(String idClaim) {
-        this.idClaim = idClaim;
-        this.timeoutClock = Clock.systemUTC();
-        this.cache = new PriorityQueue<>();
-    }
-
-    public String getIdClaim() {
-        return idClaim;
+/**
+ * Rejects one-time tokens which have already been used. See {@link LocalUsedTokenCache} for a cache which is kept in
+ * memory, and {@link RemoteUsedTokenCache} for one which is shared between processes through a
+ * {@link UsedTokenServer}.
+ */
+public interface UsedTokenCache {
+
+    /**
+     * Gets the name of the claim which holds the token ID.
+     * @return The ID claim.
+     */
+    String getIdClaim();
+
+    /**
+     * Records a token as used.
+     * @param jwt The token to check.
+     * @return Whether the token has an expiry time and ID, and had not been used before.
+     */
+    default boolean validate(JWT jwt) {
+        return validate(jwt, 0);
     }
 
-    private UUID read(JWT jwt) {
-
-        return jwt.payload().getOptional(idClaim, Serializer.UUID).orElse(null);
+    /**
+     * Records a token as used, and remembers its ID until the leeway has passed after it expires. Verifiers which
+     * accept expired tokens within some leeway must pass it here, or the token could be replayed during that time.
+     * @param jwt The token to check.
+     * @param leeway How many seconds past its expiry time the token may still be accepted.
+     * @return Whether the token has an expiry time and ID, and had not been used before.
+     */
+    boolean validate(JWT jwt, long leeway);
+
+    /**
+     * Determines how long a token's ID must be remembered.
+     * @param exp The token's expiry time, in seconds since the epoch.
+     * @param leeway How many seconds past its expiry time the token may still be accepted.
+     * @return The expiry time plus the leeway, or {@link Long#MAX_VALUE} if that would overflow.
+     */
+    static long retainUntil(long exp, long leeway) {
+        return exp > Long.MAX_VALUE - leeway ? Long.MAX_VALUE : exp + leeway;
     }
 
-    public boolean validate(JWT jwt) {
-
-        if(!cache.isEmpty()) {
-            Instant now = timeoutClock.instant();
-            UsedToken used;
-            while ((used = cache.peek()) != null && now.isAfter(used.time)) {
-                current.remove(cache.remove().tokenId);
-            }
-        }
-
-        Instant exp = jwt.getExpiresAt();
-        if(exp == null) {
-            return false;
-        }
-
-        UUID tokenId = read(jwt);
-        if(tokenId == null) {
-            return false;
-        }
-
-        if(current.contains(tokenId)) {
-            return false;
+    /**
+     * Reads a token ID from the given claim.
+     * @param jwt The token.
+     * @param idClaim The claim which holds the ID.
+     * @return The token ID, or null if the claim is missing or is not a UUID.
+     */
+    static UUID getTokenId(JWT jwt, String idClaim) {
+
+        ConfigObject obj = jwt.getClaim(idClaim);
+        if(obj == null || !obj.isString()) {
+            return null;
         }
-
-        current.add(tokenId);
-        cache.add(new UsedToken(tokenId, exp));
-        return true;
-    }
-
-    private record UsedToken(UUID tokenId, Instant time) implements Comparable<UsedToken> {
-        @Override
-        public int compareTo(@NotNull UsedTokenCache.UsedToken o) {
-            return time.compareTo(o.time);
+        try {
+            return UUID.fromString(obj.asString());
+        } catch (IllegalArgumentException ex) {
+            return null;
         }
     }
 
@@ -0,0 +1,183 @@
+package org.wallentines.jwt;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.time.Clock;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A small TCP server which lets several processes share one {@link UsedTokenStore} through
+ * {@link RemoteUsedTokenCache}. Each request is a single byte opcode, followed by the 16 bytes of a token ID and the
+ * 8 byte epoch second at which it expires. Each response is a single byte, sent in the order the requests were
+ * received, so clients may send many requests before reading any responses.
+ */
+public class UsedTokenServer implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("UsedTokenServer");
+
+    static final int OP_MARK_USED = 1;
+    static final int REQUEST_SIZE = 25;
+    static final int RESPONSE_REJECTED = 0;
+    static final int RESPONSE_ACCEPTED = 1;
+
+    private final UsedTokenStore store;
+    private final Clock clock;
+    private final ServerSocket socket;
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService purgeExecutor;
+    private volatile boolean closed;
+
+    private UsedTokenServer(UsedTokenStore store, Clock clock, ServerSocket socket) {
+        this.store = store;
+        this.clock = clock;
+        this.socket = socket;
+        this.purgeExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "UsedTokenServer Purge");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts a server backed by a new {@link ConcurrentUsedTokenStore}.
+     * @param address The address to listen on. Use port 0 to pick any free port.
+     * @return A running server.
+     * @throws IOException If the address could not be bound.
+     */
+    public static UsedTokenServer start(SocketAddress address) throws IOException {
+        return start(address, new ConcurrentUsedTokenStore(), Clock.systemUTC());
+    }
+
+    /**
+     * Starts a server.
+     * @param address The address to listen on. Use port 0 to pick any free port.
+     * @param store The store to check token IDs against.
+     * @param clock The clock used to purge expired IDs.
+     * @return A running server.
+     * @throws IOException If the address could not be bound.
+     */
+    public static UsedTokenServer start(SocketAddress address, UsedTokenStore store, Clock clock) throws IOException {
+
+        ServerSocket socket = new ServerSocket();
+        try {
+            socket.bind(address);
+        } catch (IOException ex) {
+            socket.close();
+            throw ex;
+        }
+
+        UsedTokenServer out = new UsedTokenServer(store, clock, socket);
+        out.purgeExecutor.scheduleAtFixedRate(out::purge, 1, 1, TimeUnit.SECONDS);
+
+        Thread acceptThread = new Thread(out::acceptLoop, "UsedTokenServer Accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+
+        return out;
+    }
+
+    public InetSocketAddress getAddress() {
+        return (InetSocketAddress) socket.getLocalSocketAddress();
+    }
+
+    public int getPort() {
+        return socket.getLocalPort();
+    }
+
+    public UsedTokenStore getStore() {
+        return store;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        purgeExecutor.shutdownNow();
+        socket.close();
+        for(Socket connection : connections) {
+            connection.close();
+        }
+    }
+
+    private void purge() {
+        try {
+            store.purge(clock.instant().getEpochSecond());
+        } catch (RuntimeException ex) {
+            LOGGER.warn("An error occurred while purging used tokens!", ex);
+        }
+    }
+
+    private void acceptLoop() {
+        while(!closed) {
+            try {
+                Socket connection = socket.accept();
+                connection.setTcpNoDelay(true);
+                connections.add(connection);
+
+                Thread thread = new Thread(() -> handle(connection), "UsedTokenServer Connection " + connection.getRemoteSocketAddress());
+                thread.setDaemon(true);
+                thread.start();
+
+            } catch (IOException ex) {
+                if(!closed) {
+                    LOGGER.warn("Unable to accept a connection!", ex);
+                }
+            }
+        }
+    }
+
+    private void handle(Socket connection) {
+
+        try(connection) {
+            InputStream rawIn = connection.getInputStream();
+            DataInputStream in = new DataInputStream(new BufferedInputStream(rawIn, REQUEST_SIZE * 1024));
+            OutputStream out = new BufferedOutputStream(connection.getOutputStream(), 1024);
+
+            while(!closed) {
+                int op;
+                try {
+                    op = in.readByte();
+                } catch (EOFException ex) {
+                    break;
+                }
+                if(op != OP_MARK_USED) {
+                    LOGGER.warn("Received unknown opcode {} from {}!", op, connection.getRemoteSocketAddress());
+                    break;
+                }
+
+                UUID id = new UUID(in.readLong(), in.readLong());
+                long expiresAt = in.readLong();
+                out.write(store.markUsed(id, expiresAt) ? RESPONSE_ACCEPTED : RESPONSE_REJECTED);
+
+                // Answer a whole pipelined batch with a single write
+                if(in.available() == 0) {
+                    out.flush();
+                }
+            }
+        } catch (IOException ex) {
+            if(!closed) {
+                LOGGER.debug("Lost connection to {}", connection.getRemoteSocketAddress(), ex);
+            }
+        } finally {
+            connections.remove(connection);
+        }
+    }
+
+}
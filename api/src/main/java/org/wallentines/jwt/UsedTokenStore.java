@@ -0,0 +1,26 @@
+package org.wallentines.jwt;
+
+import java.util.UUID;
+
+/**
+ * Storage for the IDs of one-time tokens used by a {@link UsedTokenCache}. Implementations must be thread-safe.
+ */
+public interface UsedTokenStore {
+
+    /**
+     * Atomically records a token ID if it has not been seen before.
+     * @param id The token ID.
+     * @param expiresAt The epoch second at which the token expires.
+     * @return Whether the ID was new.
+     */
+    boolean markUsed(UUID id, long expiresAt);
+
+    /**
+     * Forgets every ID whose token expired before the given epoch second.
+     * @param now The current epoch second.
+     */
+    void purge(long now);
+
+    int size();
+
+}
@@ -0,0 +1,125 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.wallentines.jwt.*;
+import org.wallentines.mdcfg.ConfigSection;
+import org.wallentines.mdcfg.serializer.SerializeResult;
+
+import javax.crypto.KeyGenerator;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestAsyncKeySupplier {
+
+    @Test
+    public void testReadAsync() throws GeneralSecurityException {
+
+        Random rand = new Random();
+        byte[] key = new byte[32];
+        rand.nextBytes(key);
+        HashCodec<byte[]> codec = HashCodec.HS256(key);
+
+        String jws = new JWTBuilder().issuedBy("test").signed(codec, "hmac").asString().getOrThrow();
+        SerializeResult<JWT> result = JWTReader.readAnyAsync(jws, AsyncKeySupplier.of(KeySupplier.of(codec))).join();
+        Assertions.assertTrue(result.isComplete());
+        Assertions.assertEquals("test", result.getOrThrow().getIssuer());
+
+        KeyGenerator keyGen = KeyGenerator.getInstance("AES");
+        keyGen.init(256);
+        KeyCodec<?, ?> keyCodec = KeyCodec.A256KW(keyGen.generateKey());
+
+        String jwe = new JWTBuilder().issuedBy("test").encrypted(keyCodec, CryptCodec.A256CBC_HS512()).asString().getOrThrow();
+        result = JWTReader.readAnyAsync(jwe, AsyncKeySupplier.of(KeySupplier.of(keyCodec)), Runnable::run).join();
+        Assertions.assertTrue(result.isComplete());
+        Assertions.assertEquals("test", result.getOrThrow().getIssuer());
+
+        // Missing keys, failed lookups, and malformed tokens are reported as failures
+        Assertions.assertFalse(JWTReader.readAnyAsync(jws, AsyncKeySupplier.of(KeySupplier.of(HashCodec.HS256(new byte[32])))).join().isComplete());
+        Assertions.assertFalse(JWTReader.readAnyAsync(jws, new AsyncKeySupplier() {
+            @Override
+            public <T> CompletableFuture<T> getKeyAsync(ConfigSection joseHeader, KeyType<T> type) {
+                return CompletableFuture.failedFuture(new IllegalStateException("Unavailable"));
+            }
+        }).join().isComplete());
+        Assertions.assertFalse(JWTReader.readAnyAsync("not a token", AsyncKeySupplier.of(KeySupplier.of(codec))).join().isComplete());
+    }
+
+    @Test
+    public void testShared() throws InterruptedException {
+
+        Random rand = new Random();
+        byte[] key = new byte[32];
+        rand.nextBytes(key);
+        HashCodec<byte[]> codec = HashCodec.HS256(key);
+        KeySupplier keys = KeySupplier.of(codec);
+
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        AsyncKeySupplier supplier = AsyncKeySupplier.of(new KeySupplier() {
+            @Override
+            public <T> T getKey(ConfigSection joseHeader, KeyType<T> type) {
+                loads.incrementAndGet();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    throw new RuntimeException(ex);
+                }
+                return keys.getKey(joseHeader, type);
+            }
+        });
+
+        String token = new JWTBuilder().issuedBy("test").signed(codec, "shared").asString().getOrThrow();
+
+        List<CompletableFuture<SerializeResult<JWT>>> results = new ArrayList<>();
+        for(int i = 0 ; i < 32 ; i++) {
+            results.add(JWTReader.readAnyAsync(token, supplier));
+        }
+        for(CompletableFuture<SerializeResult<JWT>> result : results) {
+            Assertions.assertFalse(result.isDone());
+        }
+
+        release.countDown();
+        for(CompletableFuture<SerializeResult<JWT>> result : results) {
+            Assertions.assertTrue(result.join().isComplete());
+        }
+        Assertions.assertEquals(1, loads.get());
+
+        // Finished lookups are not remembered
+        Assertions.assertTrue(JWTReader.readAnyAsync(token, supplier).join().isComplete());
+        Assertions.assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testSharedIsolated() {
+
+        CompletableFuture<byte[]> lookup = new CompletableFuture<>();
+        AsyncKeySupplier supplier = AsyncKeySupplier.shared(new AsyncKeySupplier() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <T> CompletableFuture<T> getKeyAsync(ConfigSection joseHeader, KeyType<T> type) {
+                return (CompletableFuture<T>) lookup;
+            }
+        });
+
+        ConfigSection header = new ConfigSection().with("kid", "shared");
+        CompletableFuture<byte[]> first = supplier.getKeyAsync(header, KeyType.HMAC);
+        CompletableFuture<byte[]> second = supplier.getKeyAsync(header, KeyType.HMAC);
+
+        // One caller giving up does not affect the others waiting on the same lookup
+        first.cancel(false);
+        Assertions.assertFalse(second.isDone());
+        second.complete(new byte[16]);
+
+        byte[] key = new byte[32];
+        lookup.complete(key);
+        Assertions.assertTrue(first.isCancelled());
+        Assertions.assertEquals(16, second.join().length);
+        Assertions.assertSame(key, supplier.getKeyAsync(header, KeyType.HMAC).join());
+    }
+
+}
@@ -0,0 +1,243 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.wallentines.jwt.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+public class TestCachingKeyStore {
+
+    @Test
+    public void testHit() {
+
+        CountingKeyStore source = new CountingKeyStore(100);
+        CachingKeyStore cache = new CachingKeyStore(source, 10);
+
+        byte[] key = cache.getKey("key1", KeyType.HMAC);
+        Assertions.assertNotNull(key);
+        Assertions.assertSame(key, cache.getKey("key1", KeyType.HMAC));
+        Assertions.assertNull(cache.getKey("missing", KeyType.HMAC));
+
+        Assertions.assertEquals(2, source.loads.get());
+        Assertions.assertEquals(new CacheStats(1, 2, 0), cache.getStats());
+    }
+
+    @Test
+    public void testBounded() {
+
+        CountingKeyStore source = new CountingKeyStore(1000);
+        CachingKeyStore cache = new CachingKeyStore(source, 100);
+
+        for(int i = 0 ; i < 1000 ; i++) {
+            Assertions.assertNotNull(cache.getKey("key" + i, KeyType.HMAC));
+        }
+
+        Assertions.assertTrue(cache.size() <= 100);
+        Assertions.assertEquals(1000 - cache.size(), cache.getStats().evictions());
+    }
+
+    @Test
+    public void testFrequentKeysKept() {
+
+        CountingKeyStore source = new CountingKeyStore(10000);
+        CachingKeyStore cache = new CachingKeyStore(source, 100);
+
+        for(int round = 0 ; round < 10 ; round++) {
+            for(int i = 0 ; i < 50 ; i++) {
+                cache.getKey("key" + i, KeyType.HMAC);
+            }
+        }
+
+        // A scan over keys which are only requested once should not push out the popular ones
+        for(int i = 50 ; i < 10000 ; i++) {
+            cache.getKey("key" + i, KeyType.HMAC);
+        }
+
+        int loads = source.loads.get();
+        for(int i = 0 ; i < 50 ; i++) {
+            cache.getKey("key" + i, KeyType.HMAC);
+        }
+        Assertions.assertTrue(source.loads.get() - loads < 5);
+    }
+
+    @Test
+    public void testIdle() {
+
+        MutableClock clock = new MutableClock();
+        CountingKeyStore source = new CountingKeyStore(100);
+        CachingKeyStore cache = new CachingKeyStore(source, 10, Duration.ofMinutes(5), clock);
+
+        cache.getKey("key1", KeyType.HMAC);
+        clock.offset = Duration.ofMinutes(4);
+        cache.getKey("key1", KeyType.HMAC);
+        Assertions.assertEquals(1, source.loads.get());
+
+        clock.offset = Duration.ofMinutes(10);
+        cache.getKey("key1", KeyType.HMAC);
+        Assertions.assertEquals(2, source.loads.get());
+        Assertions.assertEquals(1, cache.getStats().evictions());
+    }
+
+    @Test
+    public void testInvalidate() {
+
+        CountingKeyStore source = new CountingKeyStore(100);
+        CachingKeyStore cache = new CachingKeyStore(source, 10);
+
+        byte[] key = cache.getKey("key1", KeyType.HMAC);
+        cache.setKey("key1", KeyType.HMAC, new byte[48]);
+        Assertions.assertNotSame(key, cache.getKey("key1", KeyType.HMAC));
+        Assertions.assertEquals(48, cache.getKey("key1", KeyType.HMAC).length);
+
+        cache.clearKey("key1", KeyType.HMAC);
+        Assertions.assertNull(cache.getKey("key1", KeyType.HMAC));
+    }
+
+    @Test
+    public void testInvalidateWhileLoading() throws Exception {
+
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch invalidated = new CountDownLatch(1);
+        byte[] stale = new byte[32];
+        KeyStore source = new CountingKeyStore(0) {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <T> T getKey(String name, KeyType<T> type) {
+                loading.countDown();
+                try {
+                    invalidated.await();
+                } catch (InterruptedException ex) {
+                    throw new RuntimeException(ex);
+                }
+                return (T) stale;
+            }
+        };
+        CachingKeyStore cache = new CachingKeyStore(source, 10);
+
+        CompletableFuture<byte[]> result = CompletableFuture.supplyAsync(() -> cache.getKey("key1", KeyType.HMAC));
+        Assertions.assertTrue(loading.await(5, TimeUnit.SECONDS));
+        cache.invalidate("key1", KeyType.HMAC);
+        invalidated.countDown();
+
+        // The load which started before the invalidation still returns, but is not cached
+        Assertions.assertSame(stale, result.get(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testFileKeyStoreNotRetained() throws Exception {
+
+        Path folder = Files.createTempDirectory("keys");
+        folder.toFile().deleteOnExit();
+        for(int i = 0 ; i < 20 ; i++) {
+            Path file = folder.resolve("key" + i + ".key");
+            Files.write(file, new byte[32]);
+            file.toFile().deleteOnExit();
+        }
+
+        FileKeyStore files = new FileKeyStore(folder, FileKeyStore.DEFAULT_TYPES, FileKeyStore.DEFAULT_MISS_TIMEOUT, false);
+        CachingKeyStore cache = new CachingKeyStore(files, 5);
+        for(int i = 0 ; i < 20 ; i++) {
+            Assertions.assertNotNull(cache.getKey("key" + i, KeyType.HMAC));
+        }
+        Assertions.assertTrue(cache.size() <= 5);
+
+        // Each lookup reads the file again, so nothing is kept behind the cache
+        Assertions.assertNotSame(files.getKey("key0", KeyType.HMAC), files.getKey("key0", KeyType.HMAC));
+    }
+
+    @Test
+    public void testFileKeyStoreWatched() throws Exception {
+
+        Path folder = Files.createTempDirectory("keys");
+        folder.toFile().deleteOnExit();
+        Path file = folder.resolve("key.key");
+        Files.write(file, new byte[32]);
+        file.toFile().deleteOnExit();
+
+        try(FileKeyStore files = new FileKeyStore(folder, FileKeyStore.DEFAULT_TYPES, Duration.ZERO, false).watch()) {
+            CachingKeyStore cache = new CachingKeyStore(files, 10);
+            Assertions.assertEquals(32, cache.getKey("key", KeyType.HMAC).length);
+
+            // Changes on disk are passed on to the cache
+            Files.write(file, new byte[48]);
+            Assertions.assertTrue(waitFor(() -> cache.getKey("key", KeyType.HMAC).length == 48));
+
+            Files.delete(file);
+            Assertions.assertTrue(waitFor(() -> cache.getKey("key", KeyType.HMAC) == null));
+        }
+    }
+
+    private static boolean waitFor(BooleanSupplier condition) throws InterruptedException {
+        for(int i = 0 ; i < 200 ; i++) {
+            if(condition.getAsBoolean()) {
+                return true;
+            }
+            Thread.sleep(50);
+        }
+        return false;
+    }
+
+    private static class CountingKeyStore implements KeyStore {
+
+        private final Map<String, byte[]> keys = new HashMap<>();
+        private final AtomicInteger loads = new AtomicInteger();
+
+        CountingKeyStore(int count) {
+            for(int i = 0 ; i < count ; i++) {
+                keys.put("key" + i, new byte[32]);
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T getKey(String name, KeyType<T> type) {
+            loads.incrementAndGet();
+            return type == KeyType.HMAC ? (T) keys.get(name) : null;
+        }
+
+        @Override
+        public <T> void setKey(String name, KeyType<T> type, T key) {
+            keys.put(name, (byte[]) key);
+        }
+
+        @Override
+        public <T> void clearKey(String name, KeyType<T> type) {
+            keys.remove(name);
+        }
+    }
+
+    private static class MutableClock extends Clock {
+
+        private final Instant start = Instant.now();
+        private volatile Duration offset = Duration.ZERO;
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return start.plus(offset);
+        }
+    }
+
+}
@@ -0,0 +1,99 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.wallentines.jwt.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+
+public class TestClaimProjection {
+
+    private static final ClaimProjection PROJECTION = ClaimProjection.of("exp", "nbf", "sub", "usr");
+
+    private static HashCodec<byte[]> createCodec() {
+        Random rand = new Random();
+        byte[] key = new byte[32];
+        rand.nextBytes(key);
+        return HashCodec.HS256(key);
+    }
+
+    private static String sign(HashCodec<?> codec, String payload) {
+
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        String unsigned = encoder.encodeToString("{\"alg\":\"HS256\"}".getBytes(StandardCharsets.UTF_8))
+                + "." + encoder.encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+
+        return unsigned + "." + encoder.encodeToString(codec.hash(unsigned.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Test
+    public void testProjected() {
+
+        HashCodec<byte[]> codec = createCodec();
+        String token = new JWTBuilder()
+                .issuedBy("test")
+                .expiresIn(60)
+                .withClaim("sub", "user")
+                .withClaim("usr", 42)
+                .withClaim("other", "value")
+                .signed(codec)
+                .asString().getOrThrow();
+
+        JWT full = JWTReader.readAny(token, KeySupplier.of(codec)).getOrThrow();
+        JWT jwt = JWTReader.readAny(token, KeySupplier.of(codec), PROJECTION).getOrThrow();
+        ClaimProjection.ProjectedJWT projected = (ClaimProjection.ProjectedJWT) jwt;
+
+        Assertions.assertEquals(full.getExpiresAt(), jwt.getExpiresAt());
+        Assertions.assertNull(jwt.getValidAt());
+        Assertions.assertEquals(full.getClaim("sub"), jwt.getClaim("sub"));
+        Assertions.assertEquals(full.getClaim("usr"), jwt.getClaim("usr"));
+        Assertions.assertFalse(jwt.isExpired());
+        Assertions.assertTrue(new JWTVerifier().withClaim("sub", "user").verify(jwt));
+        Assertions.assertFalse(projected.isFullyParsed());
+
+        Assertions.assertEquals("test", jwt.getIssuer());
+        Assertions.assertTrue(projected.isFullyParsed());
+        Assertions.assertEquals(full.payload(), jwt.payload());
+    }
+
+    @Test
+    public void testSkipped() {
+
+        HashCodec<byte[]> codec = createCodec();
+        String token = sign(codec, " { \"big\" : {\"a\": [1, {\"b\": \"}]\\\"\"}], \"c\": null}, \"s\\u0075b\":\"user\",\n\"exp\":9999999999 } ");
+
+        JWT jwt = JWTReader.readAny(token, KeySupplier.of(codec), PROJECTION).getOrThrow();
+
+        Assertions.assertEquals("user", jwt.getClaimAsString("sub"));
+        Assertions.assertEquals(9999999999L, jwt.getExpiresAt().getEpochSecond());
+        Assertions.assertFalse(((ClaimProjection.ProjectedJWT) jwt).isFullyParsed());
+    }
+
+    @Test
+    public void testMalformed() {
+
+        HashCodec<byte[]> codec = createCodec();
+
+        Assertions.assertFalse(JWTReader.readAny(sign(codec, "{\"sub\":\"user\""), KeySupplier.of(codec), PROJECTION).isSuccess());
+        Assertions.assertFalse(JWTReader.readAny(sign(codec, "{\"sub\":}"), KeySupplier.of(codec), PROJECTION).isSuccess());
+        Assertions.assertFalse(JWTReader.readAny(sign(codec, "{\"sub\":\"user\"} x"), KeySupplier.of(codec), PROJECTION).isSuccess());
+        Assertions.assertFalse(JWTReader.readAny(sign(createCodec(), "{\"sub\":\"user\"}"), KeySupplier.of(codec), PROJECTION).isSuccess());
+
+        // Claims which are not projected must still be well-formed
+        Assertions.assertFalse(JWTReader.readAny(sign(codec, "{\"big\":[1,2},\"sub\":\"user\"}"), KeySupplier.of(codec), PROJECTION).isSuccess());
+        Assertions.assertFalse(JWTReader.readAny(sign(codec, "{\"big\":{\"a\":[}],\"sub\":\"user\"}"), KeySupplier.of(codec), PROJECTION).isSuccess());
+        Assertions.assertFalse(JWTReader.readAny(sign(codec, "{\"big\":{\"a\" 1},\"sub\":\"user\"}"), KeySupplier.of(codec), PROJECTION).isSuccess());
+        Assertions.assertFalse(JWTReader.readAny(sign(codec, "{\"big\":[1,,2],\"sub\":\"user\"}"), KeySupplier.of(codec), PROJECTION).isSuccess());
+        Assertions.assertFalse(JWTReader.readAny(sign(codec, "{\"big\":tru,\"sub\":\"user\"}"), KeySupplier.of(codec), PROJECTION).isSuccess());
+        Assertions.assertFalse(JWTReader.readAny(sign(codec, "{\"big\":01,\"sub\":\"user\"}"), KeySupplier.of(codec), PROJECTION).isSuccess());
+        Assertions.assertFalse(JWTReader.readAny(sign(codec, "{\"big\":\"\\x\",\"sub\":\"user\"}"), KeySupplier.of(codec), PROJECTION).isSuccess());
+        Assertions.assertFalse(JWTReader.readAny(sign(codec, "{\"big\":\"\\u12G4\",\"sub\":\"user\"}"), KeySupplier.of(codec), PROJECTION).isSuccess());
+        Assertions.assertFalse(JWTReader.readAny(sign(codec, "{\"big\":\"a\tb\",\"sub\":\"user\"}"), KeySupplier.of(codec), PROJECTION).isSuccess());
+        Assertions.assertFalse(JWTReader.readAny(sign(codec, "{\"b\\ig\":1,\"sub\":\"user\"}"), KeySupplier.of(codec), PROJECTION).isSuccess());
+        Assertions.assertTrue(JWTReader.readAny(sign(codec, "{\"big\":\"\\u00e9\\n\\/\\\"\",\"sub\":\"user\"}"), KeySupplier.of(codec), PROJECTION).isSuccess());
+        Assertions.assertFalse(JWTReader.readAny(sign(codec, "{\"big\":1.e5,\"sub\":\"user\"}"), KeySupplier.of(codec), PROJECTION).isSuccess());
+        Assertions.assertFalse(JWTReader.readAny(sign(codec, "{\"big\":" + "[".repeat(10000) + ",\"sub\":\"user\"}"), KeySupplier.of(codec), PROJECTION).isSuccess());
+        Assertions.assertTrue(JWTReader.readAny(sign(codec, "{\"big\":[[], {}, -1.5e3, true, [null]],\"sub\":\"user\"}"), KeySupplier.of(codec), PROJECTION).isSuccess());
+    }
+
+}
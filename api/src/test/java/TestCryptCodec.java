@@ -1,5 +1,6 @@
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.wallentines.jwt.CipherCache;
 import org.wallentines.jwt.CryptCodec;
 
 import java.util.Base64;
@@ -72,4 +73,38 @@ public class TestCryptCodec {
         Assertions.assertArrayEquals(data, decrypted);
 
     }
+
+    @Test
+    public void testCacheDisabled() {
+
+        CryptCodec<CryptCodec.CompoundKey> codec = CryptCodec.A256CBC_HS512();
+        byte[] data = "my secret data".getBytes();
+
+        CipherCache.setEnabled(false);
+        try {
+            byte[] encrypted = codec.encrypt(data, new byte[0]).cipherText();
+            Assertions.assertArrayEquals(data, codec.decrypt(encrypted));
+        } finally {
+            CipherCache.setEnabled(true);
+        }
+
+        byte[] encrypted = codec.encrypt(data, new byte[0]).cipherText();
+        Assertions.assertArrayEquals(data, codec.decrypt(encrypted));
+    }
+
+    @Test
+    public void testVerify() {
+
+        CryptCodec<CryptCodec.CompoundKey> codec = CryptCodec.A128CBC_HS256();
+
+        byte[] aad = "header".getBytes();
+        CryptCodec.CryptOutput output = codec.encrypt("my secret data".getBytes(), aad);
+
+        Assertions.assertTrue(codec.verify(output.cipherText(), aad, output.authTag()));
+        Assertions.assertFalse(codec.verify(output.cipherText(), "other".getBytes(), output.authTag()));
+
+        byte[] tampered = output.cipherText().clone();
+        tampered[0] ^= 1;
+        Assertions.assertFalse(codec.verify(tampered, aad, output.authTag()));
+    }
 }
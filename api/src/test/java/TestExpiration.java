@@ -1,9 +1,10 @@
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
-import org.wallentines.jwt.HashCodec;
-import org.wallentines.jwt.JWSSerializer;
-import org.wallentines.jwt.JWT;
-import org.wallentines.jwt.JWTBuilder;
+import org.wallentines.jwt.*;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
 
 public class TestExpiration {
 
@@ -39,4 +40,102 @@ public class TestExpiration {
         Assertions.assertFalse(parsed.isExpired());
     }
 
+    @Test
+    public void testEpochSeconds() {
+
+        JWT jwt = new JWTBuilder()
+                .issuedAt(Instant.ofEpochSecond(1000))
+                .expiresAt(Instant.ofEpochSecond(2000))
+                .validAt(Instant.ofEpochSecond(1500))
+                .unsecured();
+
+        Assertions.assertEquals(1000, jwt.getIssuedAtSeconds());
+        Assertions.assertEquals(2000, jwt.getExpiresAtSeconds());
+        Assertions.assertEquals(1500, jwt.getValidAtSeconds());
+        Assertions.assertEquals(JWT.NO_TIME, new JWTBuilder().unsecured().getExpiresAtSeconds());
+
+        Assertions.assertFalse(jwt.isValid(1499, 0));
+        Assertions.assertTrue(jwt.isValid(1500, 0));
+        Assertions.assertTrue(jwt.isValid(1495, 5));
+        Assertions.assertFalse(jwt.isExpired(2000, 0));
+        Assertions.assertTrue(jwt.isExpired(2001, 0));
+        Assertions.assertFalse(jwt.isExpired(2005, 5));
+
+        long now = System.currentTimeMillis() / 1000;
+        Assertions.assertTrue(Math.abs(EpochClock.system().seconds() - now) <= 1);
+    }
+
+    @Test
+    public void testLeeway() {
+
+        long[] now = { 1000 };
+        JWT jwt = new JWTBuilder()
+                .withClaim("jti", UUID.randomUUID().toString())
+                .expiresAt(Instant.ofEpochSecond(1000))
+                .validAt(Instant.ofEpochSecond(990))
+                .unsecured();
+
+        JWTVerifier strict = new JWTVerifier().allowUnprotected().withClock(() -> now[0]);
+        JWTVerifier lenient = new JWTVerifier().allowUnprotected().withClock(() -> now[0]).withLeeway(Duration.ofSeconds(30));
+
+        Assertions.assertTrue(strict.verify(jwt));
+        now[0] = 1020;
+        Assertions.assertFalse(strict.verify(jwt));
+        Assertions.assertTrue(lenient.verify(jwt));
+        now[0] = 980;
+        Assertions.assertFalse(strict.verify(jwt));
+        Assertions.assertTrue(lenient.verify(jwt));
+        now[0] = 1031;
+        Assertions.assertFalse(lenient.verify(jwt));
+
+        // One-time IDs are kept until the leeway has passed
+        LocalUsedTokenCache cache = new LocalUsedTokenCache("jti", () -> now[0], new ConcurrentUsedTokenStore());
+        JWTVerifier single = new JWTVerifier().allowUnprotected().withClock(() -> now[0]).withLeeway(Duration.ofSeconds(30)).enforceSingleUse(cache);
+        now[0] = 1000;
+        Assertions.assertTrue(single.verify(jwt));
+        now[0] = 1020;
+        cache.purge();
+        Assertions.assertFalse(single.verify(jwt));
+    }
+
+    @Test
+    public void testLeewayOverflow() {
+
+        long now = 1000;
+        JWT jwt = new JWTBuilder()
+                .withClaim("jti", UUID.randomUUID().toString())
+                .withClaim("exp", Long.MAX_VALUE - 5)
+                .unsecured();
+
+        LocalUsedTokenCache cache = new LocalUsedTokenCache("jti", () -> now, new ConcurrentUsedTokenStore());
+        JWTVerifier verifier = new JWTVerifier().allowUnprotected().withClock(() -> now).withLeeway(Duration.ofSeconds(30)).enforceSingleUse(cache);
+
+        Assertions.assertTrue(verifier.verify(jwt));
+        cache.purge();
+        Assertions.assertEquals(1, cache.size());
+        Assertions.assertFalse(verifier.verify(jwt));
+
+        Assertions.assertEquals(Long.MAX_VALUE, UsedTokenCache.retainUntil(Long.MAX_VALUE - 5, 30));
+        Assertions.assertEquals(1030, UsedTokenCache.retainUntil(1000, 30));
+    }
+
+    @Test
+    public void testBloomLeewayOverflow() {
+
+        long now = 1000;
+        JWT jwt = new JWTBuilder()
+                .withClaim("jti", UUID.randomUUID().toString())
+                .withClaim("exp", Long.MAX_VALUE - 5)
+                .unsecured();
+
+        // The saturated expiry lands in the last generation, which must not look expired
+        LocalUsedTokenCache cache = new LocalUsedTokenCache("jti", () -> now, new BloomUsedTokenStore(1000, 0.001, Duration.ofSeconds(7)));
+        JWTVerifier verifier = new JWTVerifier().allowUnprotected().withClock(() -> now).withLeeway(Duration.ofSeconds(30)).enforceSingleUse(cache);
+
+        Assertions.assertTrue(verifier.verify(jwt));
+        cache.purge();
+        Assertions.assertEquals(1, cache.size());
+        Assertions.assertFalse(verifier.verify(jwt));
+    }
+
 }
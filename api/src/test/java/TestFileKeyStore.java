@@ -0,0 +1,165 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.wallentines.jwt.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+public class TestFileKeyStore {
+
+    private static Path createFolder() throws IOException {
+        Path folder = Files.createTempDirectory("keys");
+        folder.toFile().deleteOnExit();
+        return folder;
+    }
+
+    private static void writeKey(Path folder, String name) throws IOException {
+        Path file = folder.resolve(name + ".key");
+        Files.write(file, new byte[32]);
+        file.toFile().deleteOnExit();
+    }
+
+    @Test
+    public void testLoad() throws IOException {
+
+        Path folder = createFolder();
+        writeKey(folder, "test");
+
+        FileKeyStore store = new FileKeyStore(folder);
+        byte[] key = store.getKey("test", KeyType.HMAC);
+        Assertions.assertNotNull(key);
+        Assertions.assertSame(key, store.getKey("test", KeyType.HMAC));
+    }
+
+    @Test
+    public void testMissCached() throws IOException {
+
+        Path folder = createFolder();
+        FileKeyStore store = new FileKeyStore(folder, FileKeyStore.DEFAULT_TYPES, Duration.ofMinutes(1));
+
+        Assertions.assertNull(store.getKey("test", KeyType.HMAC));
+        writeKey(folder, "test");
+        Assertions.assertNull(store.getKey("test", KeyType.HMAC));
+
+        store.setKey("test", KeyType.HMAC, new byte[32]);
+        Assertions.assertNotNull(store.getKey("test", KeyType.HMAC));
+    }
+
+    @Test
+    public void testMissExpired() throws IOException {
+
+        Path folder = createFolder();
+        FileKeyStore store = new FileKeyStore(folder, FileKeyStore.DEFAULT_TYPES, Duration.ZERO);
+
+        Assertions.assertNull(store.getKey("test", KeyType.HMAC));
+        writeKey(folder, "test");
+        Assertions.assertNotNull(store.getKey("test", KeyType.HMAC));
+    }
+
+    @Test
+    public void testConcurrent() throws IOException {
+
+        Path folder = createFolder();
+        writeKey(folder, "test");
+        FileKeyStore store = new FileKeyStore(folder);
+
+        List<CompletableFuture<byte[]>> futures = new ArrayList<>();
+        for(int i = 0 ; i < 8 ; i++) {
+            futures.add(CompletableFuture.supplyAsync(() -> store.getKey("test", KeyType.HMAC)));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).orTimeout(15000L, TimeUnit.MILLISECONDS).join();
+
+        byte[] key = futures.get(0).join();
+        Assertions.assertNotNull(key);
+        for(CompletableFuture<byte[]> future : futures) {
+            Assertions.assertSame(key, future.join());
+        }
+    }
+
+    @Test
+    public void testPreload() throws IOException {
+
+        Path folder = createFolder();
+        writeKey(folder, "first");
+        writeKey(folder, "second");
+        Files.writeString(folder.resolve("other.txt"), "Not a key");
+        folder.resolve("other.txt").toFile().deleteOnExit();
+
+        FileKeyStore store = new FileKeyStore(folder).preload();
+        Files.delete(folder.resolve("first.key"));
+
+        Assertions.assertNotNull(store.getKey("first", KeyType.HMAC));
+        Assertions.assertNotNull(store.getKey("second", KeyType.HMAC));
+    }
+
+    @Test
+    public void testWatch() throws IOException, InterruptedException {
+
+        Path folder = createFolder();
+        writeKey(folder, "first");
+
+        try(FileKeyStore store = new FileKeyStore(folder).preload().watch()) {
+
+            byte[] first = store.getKey("first", KeyType.HMAC);
+            Assertions.assertNotNull(first);
+            Assertions.assertNull(store.getKey("second", KeyType.HMAC));
+
+            writeKey(folder, "second");
+            Files.write(folder.resolve("first.key"), new byte[48]);
+            Assertions.assertTrue(waitFor(() -> store.getKey("second", KeyType.HMAC) != null));
+            Assertions.assertTrue(waitFor(() -> store.getKey("first", KeyType.HMAC).length == 48));
+
+            Files.delete(folder.resolve("second.key"));
+            Assertions.assertTrue(waitFor(() -> store.getKey("second", KeyType.HMAC) == null));
+        }
+    }
+
+    @Test
+    public void testWatchUnreadable() throws Exception {
+
+        Path folder = createFolder();
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        PublicKey key = generator.generateKeyPair().getPublic();
+        Path file = folder.resolve("rsa.pub");
+        Files.write(file, key.getEncoded());
+        file.toFile().deleteOnExit();
+
+        try(FileKeyStore store = new FileKeyStore(folder).preload().watch()) {
+
+            Assertions.assertEquals(key, store.getKey("rsa", KeyType.RSA_PUBLIC));
+
+            // A partly written file does not replace the loaded key
+            Files.write(file, Arrays.copyOf(key.getEncoded(), 16));
+            writeKey(folder, "marker");
+            Assertions.assertTrue(waitFor(() -> store.getKey("marker", KeyType.HMAC) != null));
+            Assertions.assertEquals(key, store.getKey("rsa", KeyType.RSA_PUBLIC));
+
+            Files.write(file, new byte[0]);
+            Files.delete(folder.resolve("marker.key"));
+            Assertions.assertTrue(waitFor(() -> store.getKey("marker", KeyType.HMAC) == null));
+            Assertions.assertEquals(key, store.getKey("rsa", KeyType.RSA_PUBLIC));
+        }
+    }
+
+    private static boolean waitFor(BooleanSupplier condition) throws InterruptedException {
+        for(int i = 0 ; i < 200 ; i++) {
+            if(condition.getAsBoolean()) {
+                return true;
+            }
+            Thread.sleep(50);
+        }
+        return false;
+    }
+
+}
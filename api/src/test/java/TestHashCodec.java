@@ -0,0 +1,53 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.wallentines.jwt.HashCodec;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+public class TestHashCodec {
+
+    @Test
+    public void testReuse() {
+
+        Random rand = new Random();
+        byte[] key = new byte[32];
+        rand.nextBytes(key);
+
+        HashCodec<byte[]> codec = HashCodec.HS256(key);
+
+        byte[] data = "my data".getBytes();
+        byte[] expected = HashCodec.ALG_HS256.hash(key, data);
+
+        Assertions.assertArrayEquals(expected, codec.hash(data));
+        Assertions.assertArrayEquals(expected, codec.hash(data));
+        Assertions.assertArrayEquals(expected, codec.hash("my ".getBytes(), "data".getBytes()));
+    }
+
+    @Test
+    public void testConcurrent() {
+
+        Random rand = new Random();
+        byte[] key = new byte[64];
+        rand.nextBytes(key);
+
+        HashCodec<byte[]> codec = HashCodec.HS512(key);
+
+        List<CompletableFuture<?>> futures = new ArrayList<>();
+        for(int i = 0; i < 16; i++) {
+            final int index = i;
+            futures.add(CompletableFuture.runAsync(() -> {
+                for(int j = 0 ; j < 200 ; j++) {
+                    byte[] data = ("data" + index + "-" + j).getBytes();
+                    Assertions.assertArrayEquals(HashCodec.ALG_HS512.hash(key, data), codec.hash(data));
+                }
+            }));
+        }
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).orTimeout(15000L, TimeUnit.MILLISECONDS).join();
+    }
+
+}
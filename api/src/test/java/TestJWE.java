@@ -65,6 +65,30 @@ public class TestJWE {
         testJWE(codec);
     }
 
+    @Test
+    public void testTampered() throws GeneralSecurityException {
+
+        KeyGenerator keyGen = KeyGenerator.getInstance("AES");
+        keyGen.init(256);
+
+        KeyCodec<SecretKey, SecretKey> codec = KeyCodec.A256KW(keyGen.generateKey());
+        KeySupplier supplier = KeySupplier.of(codec);
+
+        String encoded = new JWTBuilder()
+                .issuedBy("test")
+                .encrypted(codec, CryptCodec.A256CBC_HS512())
+                .asString().getOrThrow();
+
+        Assertions.assertTrue(JWESerializer.read(encoded, supplier).isSuccess());
+
+        String[] parts = encoded.split("\\.");
+        String cipherText = (parts[3].charAt(0) == 'A' ? "B" : "A") + parts[3].substring(1);
+        String authTag = (parts[4].charAt(0) == 'A' ? "B" : "A") + parts[4].substring(1);
+
+        Assertions.assertFalse(JWESerializer.read(String.join(".", parts[0], parts[1], parts[2], cipherText, parts[4]), supplier).isSuccess());
+        Assertions.assertFalse(JWESerializer.read(String.join(".", parts[0], parts[1], parts[2], parts[3], authTag), supplier).isSuccess());
+    }
+
     private <KE extends Key, KD extends Key> void testJWE(KeyCodec<KE, KD> codec) throws GeneralSecurityException {
 
         testJWE(codec, CryptCodec.A128CBC_HS256());
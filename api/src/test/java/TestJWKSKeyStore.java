@@ -0,0 +1,229 @@
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.wallentines.jwt.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestJWKSKeyStore {
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private static byte[] randomKey() {
+        byte[] key = new byte[32];
+        new Random().nextBytes(key);
+        return key;
+    }
+
+    private static String octKey(String kid, byte[] key) {
+        return "{\"kty\":\"oct\",\"kid\":\"" + kid + "\",\"k\":\"" + ENCODER.encodeToString(key) + "\"}";
+    }
+
+    private static String keySet(String... keys) {
+        return "{\"keys\":[" + String.join(",", keys) + "]}";
+    }
+
+    @Test
+    public void testRead() throws Exception {
+
+        byte[] hmac = randomKey();
+        byte[] aes = randomKey();
+
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        RSAPublicKey rsa = (RSAPublicKey) generator.generateKeyPair().getPublic();
+
+        String rsaKey = "{\"kty\":\"RSA\",\"kid\":\"rsa\",\"n\":\"" + ENCODER.encodeToString(rsa.getModulus().toByteArray())
+                + "\",\"e\":\"" + ENCODER.encodeToString(rsa.getPublicExponent().toByteArray()) + "\"}";
+        String aesKey = "{\"kty\":\"oct\",\"kid\":\"aes\",\"alg\":\"A256KW\",\"k\":\"" + ENCODER.encodeToString(aes) + "\"}";
+        String jwks = keySet(octKey("hmac", hmac), aesKey, rsaKey, "{\"kty\":\"EC\",\"kid\":\"ec\"}");
+
+        try(JWKSKeyStore store = new JWKSKeyStore(() -> jwks.getBytes(StandardCharsets.UTF_8))) {
+
+            Assertions.assertArrayEquals(hmac, store.getKey("hmac", KeyType.HMAC));
+            Assertions.assertArrayEquals(aes, store.getKey("aes", KeyType.AES).getEncoded());
+            Assertions.assertNull(store.getKey("aes", KeyType.HMAC));
+            Assertions.assertEquals(rsa, store.getKey("rsa", KeyType.RSA_PUBLIC));
+            Assertions.assertNull(store.getKey("ec", KeyType.RSA_PUBLIC));
+            Assertions.assertEquals(4, store.size());
+
+            KeyCodec<?, ?> codec = KeyCodec.A256KW(store.getKey("aes", KeyType.AES));
+            String token = new JWTBuilder().issuedBy("test").encrypted(codec, CryptCodec.A256CBC_HS512(), "aes").asString().getOrThrow();
+            JWT decoded = JWTReader.readAny(token, KeySupplier.fromHeader(store)).getOrThrow();
+            Assertions.assertEquals("test", decoded.getIssuer());
+
+            // The store is read-only
+            store.setKey("hmac", KeyType.HMAC, randomKey());
+            store.clearKey("hmac", KeyType.HMAC);
+            Assertions.assertArrayEquals(hmac, store.getKey("hmac", KeyType.HMAC));
+        }
+    }
+
+    @Test
+    public void testRefetchLimit() {
+
+        AtomicInteger fetches = new AtomicInteger();
+        String[] jwks = { keySet(octKey("first", randomKey())) };
+        JWKSFetcher fetcher = () -> {
+            fetches.incrementAndGet();
+            return jwks[0].getBytes(StandardCharsets.UTF_8);
+        };
+
+        try(JWKSKeyStore store = new JWKSKeyStore(fetcher, Duration.ofHours(1), Duration.ofHours(1))) {
+
+            Assertions.assertNotNull(store.getKey("first", KeyType.HMAC));
+            Assertions.assertEquals(1, fetches.get());
+
+            // Unknown key IDs do not cause another fetch within the interval
+            jwks[0] = keySet(octKey("first", randomKey()), octKey("second", randomKey()));
+            for(int i = 0 ; i < 100 ; i++) {
+                Assertions.assertNull(store.getKey("unknown" + i, KeyType.HMAC));
+            }
+            Assertions.assertNull(store.getKey("second", KeyType.HMAC));
+            Assertions.assertEquals(1, fetches.get());
+
+            Assertions.assertTrue(store.refresh());
+            Assertions.assertNotNull(store.getKey("second", KeyType.HMAC));
+        }
+
+        fetches.set(0);
+        try(JWKSKeyStore store = new JWKSKeyStore(fetcher, Duration.ofHours(1), Duration.ZERO)) {
+            Assertions.assertNull(store.getKey("unknown", KeyType.HMAC));
+            Assertions.assertNull(store.getKey("unknown", KeyType.HMAC));
+            Assertions.assertEquals(2, fetches.get());
+        }
+    }
+
+    @Test
+    public void testBackgroundRefresh() throws Exception {
+
+        Path file = Files.createTempFile("jwks", ".json");
+        try {
+            Files.writeString(file, keySet(octKey("first", randomKey())));
+
+            try(JWKSKeyStore store = new JWKSKeyStore(JWKSFetcher.ofFile(file), Duration.ofMillis(200), Duration.ofHours(1), Duration.ofHours(1))) {
+
+                Assertions.assertTrue(store.refresh());
+                Files.writeString(file, "not json");
+                Thread.sleep(400);
+
+                // A failed fetch keeps the previous keys
+                Assertions.assertNotNull(store.getKey("first", KeyType.HMAC));
+
+                Files.writeString(file, keySet(octKey("second", randomKey())));
+                long deadline = System.currentTimeMillis() + 5000;
+                while(store.getKey("second", KeyType.HMAC) == null && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(20);
+                }
+                Assertions.assertNotNull(store.getKey("second", KeyType.HMAC));
+                Assertions.assertNull(store.getKey("first", KeyType.HMAC));
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testFetchDoesNotBlockLookups() throws Exception {
+
+        CountDownLatch fetching = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        JWKSFetcher fetcher = () -> {
+            fetching.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                throw new IOException(ex);
+            }
+            return keySet(octKey("first", randomKey())).getBytes(StandardCharsets.UTF_8);
+        };
+
+        try(JWKSKeyStore store = new JWKSKeyStore(fetcher, Duration.ofHours(1), Duration.ofHours(1))) {
+
+            CompletableFuture<byte[]> first = CompletableFuture.supplyAsync(() -> store.getKey("first", KeyType.HMAC));
+            Assertions.assertTrue(fetching.await(5, TimeUnit.SECONDS));
+
+            // Another caller does not wait for the fetch which is already running
+            long start = System.nanoTime();
+            Assertions.assertNull(store.getKey("unknown", KeyType.HMAC));
+            Assertions.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+            Assertions.assertFalse(first.isDone());
+
+            release.countDown();
+            Assertions.assertNotNull(first.get(5, TimeUnit.SECONDS));
+            Assertions.assertNotNull(store.getKey("first", KeyType.HMAC));
+        }
+    }
+
+    @Test
+    public void testMaxStale() throws Exception {
+
+        boolean[] failing = { false };
+        JWKSFetcher fetcher = () -> {
+            if(failing[0]) {
+                throw new IOException("Unavailable");
+            }
+            return keySet(octKey("first", randomKey())).getBytes(StandardCharsets.UTF_8);
+        };
+
+        try(JWKSKeyStore store = new JWKSKeyStore(fetcher, Duration.ofHours(1), Duration.ZERO, Duration.ofMillis(200))) {
+
+            Assertions.assertTrue(store.refresh());
+            failing[0] = true;
+            Assertions.assertFalse(store.refresh());
+            Assertions.assertNotNull(store.getKey("first", KeyType.HMAC));
+
+            // Keys are no longer served once the last successful fetch is too old
+            Thread.sleep(300);
+            Assertions.assertNull(store.getKey("first", KeyType.HMAC));
+            Assertions.assertEquals(0, store.size());
+
+            failing[0] = false;
+            Assertions.assertNotNull(store.getKey("first", KeyType.HMAC));
+        }
+    }
+
+    @Test
+    public void testHttp() throws IOException {
+
+        byte[] key = randomKey();
+        byte[] body = keySet(octKey("http", key)).getBytes(StandardCharsets.UTF_8);
+
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/jwks.json", exchange -> {
+            exchange.sendResponseHeaders(200, body.length);
+            try(OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+
+        try {
+            URI uri = URI.create("http://127.0.0.1:" + server.getAddress().getPort());
+            try(JWKSKeyStore store = new JWKSKeyStore(JWKSFetcher.ofURI(uri.resolve("/jwks.json")))) {
+                Assertions.assertArrayEquals(key, store.getKey("http", KeyType.HMAC));
+            }
+            try(JWKSKeyStore store = new JWKSKeyStore(JWKSFetcher.ofURI(uri.resolve("/missing")))) {
+                Assertions.assertFalse(store.refresh());
+            }
+        } finally {
+            server.stop(0);
+        }
+    }
+
+}
@@ -1,9 +1,15 @@
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.wallentines.jwt.*;
+import org.wallentines.mdcfg.ConfigSection;
+import org.wallentines.mdcfg.serializer.SerializeResult;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
-import java.util.Random;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class TestJWS {
 
@@ -33,4 +39,288 @@ public class TestJWS {
 
     }
 
+    @Test
+    public void testReadAny() {
+
+        Random rand = new Random();
+        byte[] key = new byte[32];
+        rand.nextBytes(key);
+
+        HashCodec<byte[]> codec = HashCodec.HS256(key);
+        KeySupplier supplier = KeySupplier.of(codec);
+
+        String encoded = new JWTBuilder()
+                .issuedBy("test")
+                .signed(codec)
+                .asString().getOrThrow();
+
+        JWT decoded = JWTReader.readAny(encoded, supplier).getOrThrow();
+        Assertions.assertEquals("test", decoded.getIssuer());
+
+        Assertions.assertFalse(JWTReader.readAny("abc", supplier).isSuccess());
+        Assertions.assertFalse(JWTReader.readAny(encoded + ".abc.def.ghi", supplier).isSuccess());
+        Assertions.assertFalse(JWTReader.readAny(encoded.substring(0, encoded.lastIndexOf('.')), supplier).isSuccess());
+    }
+
+    @Test
+    public void testPrepared() {
+
+        Random rand = new Random();
+        byte[] key = new byte[32];
+        rand.nextBytes(key);
+
+        HashCodec<byte[]> codec = HashCodec.HS256(key);
+        byte[][] current = { key };
+        KeySupplier supplier = KeySupplier.prepared(new KeySupplier() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <T> T getKey(ConfigSection joseHeader, KeyType<T> type) {
+                return type == KeyType.HMAC ? (T) current[0] : null;
+            }
+        });
+
+        String encoded = new JWTBuilder()
+                .issuedBy("test")
+                .signed(codec)
+                .asString().getOrThrow();
+
+        JWSSerializer.JWS first = (JWSSerializer.JWS) JWTReader.readAny(encoded, supplier).getOrThrow();
+        JWSSerializer.JWS second = (JWSSerializer.JWS) JWTReader.readAny(encoded, supplier).getOrThrow();
+        Assertions.assertSame(first.signCodec(), second.signCodec());
+
+        current[0] = key.clone();
+        JWSSerializer.JWS rotated = (JWSSerializer.JWS) JWTReader.readAny(encoded, supplier).getOrThrow();
+        Assertions.assertNotSame(first.signCodec(), rotated.signCodec());
+
+        // Made-up key IDs resolving to the same key share one codec
+        PreparedKeySupplier prepared = new PreparedKeySupplier(KeySupplier.of(codec));
+        for(int i = 0 ; i < 100 ; i++) {
+            String token = new JWTBuilder().issuedBy("test").signed(codec, "kid" + i).asString().getOrThrow();
+            Assertions.assertTrue(JWTReader.readAny(token, prepared).isComplete());
+        }
+        Assertions.assertEquals(1, prepared.size());
+    }
+
+    @Test
+    public void testReadAll() {
+
+        Random rand = new Random();
+        Map<String, byte[]> keys = new HashMap<>();
+        for(int i = 0 ; i < 4 ; i++) {
+            byte[] key = new byte[32];
+            rand.nextBytes(key);
+            keys.put("key" + i, key);
+        }
+
+        AtomicInteger lookups = new AtomicInteger();
+        KeySupplier supplier = new KeySupplier() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <T> T getKey(ConfigSection joseHeader, KeyType<T> type) {
+                lookups.incrementAndGet();
+                return type == KeyType.HMAC ? (T) keys.get(joseHeader.getString("kid")) : null;
+            }
+        };
+
+        List<String> tokens = new ArrayList<>();
+        for(int i = 0 ; i < 2000 ; i++) {
+            String kid = "key" + (i % 4);
+            tokens.add(new JWTBuilder()
+                    .withClaim("index", i)
+                    .signed(HashCodec.HS256(keys.get(kid)), kid)
+                    .asString().getOrThrow());
+        }
+        tokens.set(10, "abc");
+        tokens.set(11, tokens.get(11).substring(0, tokens.get(11).length() - 4) + "AAAA");
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<SerializeResult<JWT>> results;
+        try {
+            results = JWTReader.readAll(tokens, supplier, executor);
+        } finally {
+            executor.shutdown();
+        }
+        Assertions.assertEquals(tokens.size(), results.size());
+        Assertions.assertEquals(4, lookups.get());
+
+        for(int i = 0 ; i < results.size() ; i++) {
+            if(i == 10 || i == 11) {
+                Assertions.assertFalse(results.get(i).isComplete());
+            } else {
+                Assertions.assertEquals(i, results.get(i).getOrThrow().getClaim("index").asNumber().intValue());
+            }
+        }
+    }
+
+    @Test
+    public void testVerifyAll() {
+
+        Random rand = new Random();
+        byte[] key = new byte[32];
+        rand.nextBytes(key);
+        HashCodec<byte[]> codec = HashCodec.HS256(key);
+
+        List<String> tokens = new ArrayList<>();
+        for(int i = 0 ; i < 100 ; i++) {
+            tokens.add(new JWTBuilder()
+                    .withClaim("index", i)
+                    .expiresIn(i % 2 == 0 ? 60 : -60)
+                    .signed(codec)
+                    .asString().getOrThrow());
+        }
+
+        List<SerializeResult<JWT>> results = new JWTVerifier().verifyAll(tokens, KeySupplier.of(codec));
+        for(int i = 0 ; i < results.size() ; i++) {
+            Assertions.assertEquals(i % 2 == 0, results.get(i).isComplete());
+        }
+    }
+
+    @Test
+    public void testReadAllHeaders() {
+
+        Random rand = new Random();
+        byte[] first = new byte[32];
+        byte[] second = new byte[32];
+        rand.nextBytes(first);
+        rand.nextBytes(second);
+
+        // A supplier which picks keys by a header parameter other than the key ID
+        AtomicInteger lookups = new AtomicInteger();
+        KeySupplier supplier = new KeySupplier() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <T> T getKey(ConfigSection joseHeader, KeyType<T> type) {
+                lookups.incrementAndGet();
+                return (T) (joseHeader.getString("ver").equals("1") ? first : second);
+            }
+        };
+
+        List<String> tokens = new ArrayList<>();
+        for(int i = 0 ; i < 100 ; i++) {
+            tokens.add(sign(i % 2 == 0 ? first : second, "{\"alg\":\"HS256\",\"kid\":\"key\",\"ver\":\"" + (i % 2 + 1) + "\"}", "{\"index\":" + i + "}"));
+        }
+
+        List<SerializeResult<JWT>> results = JWTReader.readAll(tokens, supplier);
+        for(int i = 0 ; i < results.size() ; i++) {
+            Assertions.assertEquals(i, results.get(i).getOrThrow().getClaim("index").asNumber().intValue());
+        }
+        Assertions.assertEquals(2, lookups.get());
+    }
+
+    @Test
+    public void testVerifyAllError() {
+
+        Random rand = new Random();
+        byte[] key = new byte[32];
+        rand.nextBytes(key);
+        HashCodec<byte[]> codec = HashCodec.HS256(key);
+
+        // An error while verifying one token only fails that token
+        UsedTokenCache cache = new UsedTokenCache() {
+            @Override
+            public String getIdClaim() {
+                return "jti";
+            }
+
+            @Override
+            public boolean validate(JWT jwt, long leeway) {
+                if(jwt.getClaim("index").asNumber().intValue() == 5) {
+                    throw new IllegalStateException("Used token log is full!");
+                }
+                return true;
+            }
+        };
+
+        List<String> tokens = new ArrayList<>();
+        for(int i = 0 ; i < 10 ; i++) {
+            tokens.add(new JWTBuilder().withClaim("index", i).expiresIn(60).signed(codec).asString().getOrThrow());
+        }
+
+        List<SerializeResult<JWT>> results = new JWTVerifier().enforceSingleUse(cache).verifyAll(tokens, KeySupplier.of(codec));
+        for(int i = 0 ; i < results.size() ; i++) {
+            Assertions.assertEquals(i != 5, results.get(i).isComplete());
+        }
+    }
+
+    private static String sign(byte[] key, String header, String payload) {
+
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        String unsigned = encoder.encodeToString(header.getBytes(StandardCharsets.UTF_8))
+                + "." + encoder.encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+        return unsigned + "." + encoder.encodeToString(HashCodec.HS256(key).hash(unsigned.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Test
+    public void testPolicyFirst() {
+
+        Random rand = new Random();
+        byte[] key = new byte[32];
+        rand.nextBytes(key);
+        HashCodec<byte[]> codec = HashCodec.HS256(key);
+
+        AtomicInteger lookups = new AtomicInteger();
+        KeySupplier counting = new KeySupplier() {
+            @Override
+            public <T> T getKey(ConfigSection joseHeader, KeyType<T> type) {
+                lookups.incrementAndGet();
+                return KeySupplier.of(codec).getKey(joseHeader, type);
+            }
+        };
+
+        String unsecured = new JWTBuilder().issuedBy("test").expiresIn(60).unsecured().asString().getOrThrow();
+        String signed = new JWTBuilder().issuedBy("test").expiresIn(60).signed(codec).asString().getOrThrow();
+
+        // Rejected from the header alone
+        Assertions.assertFalse(new JWTVerifier().read(unsecured, counting).isComplete());
+        Assertions.assertFalse(new JWTVerifier().requireEncrypted().read(signed, counting).isComplete());
+        Assertions.assertEquals(0, lookups.get());
+
+        // Batches are checked the same way
+        List<SerializeResult<JWT>> results = new JWTVerifier().requireEncrypted().verifyAll(List.of(signed, unsecured), counting);
+        Assertions.assertFalse(results.get(0).isComplete());
+        Assertions.assertFalse(results.get(1).isComplete());
+        Assertions.assertEquals(0, lookups.get());
+        results = new JWTVerifier().verifyAll(List.of(signed, unsecured), counting);
+        Assertions.assertTrue(results.get(0).isComplete());
+        Assertions.assertFalse(results.get(1).isComplete());
+        Assertions.assertEquals(1, lookups.get());
+        lookups.set(0);
+
+        Assertions.assertTrue(new JWTVerifier().allowUnprotected().read(unsecured, counting).isComplete());
+
+        SerializeResult<JWT> result = new JWTVerifier().withClaim("iss", "test").read(signed, counting);
+        Assertions.assertTrue(result.isComplete());
+        Assertions.assertEquals("test", result.getOrThrow().getClaim("iss").asString());
+
+        Assertions.assertFalse(new JWTVerifier().withClaim("iss", "other").read(signed, counting).isComplete());
+        Assertions.assertFalse(new JWTVerifier().read(signed, KeySupplier.of(HashCodec.HS256(new byte[32]))).isComplete());
+        Assertions.assertFalse(new JWTVerifier().read("not a token", counting).isComplete());
+    }
+
+    @Test
+    public void testTampered() {
+
+        Random rand = new Random();
+        byte[] key = new byte[32];
+        rand.nextBytes(key);
+
+        HashCodec<byte[]> codec = HashCodec.HS256(key);
+
+        String encoded = new JWTBuilder()
+                .issuedBy("test")
+                .signed(codec)
+                .asString().getOrThrow();
+
+        String[] parts = encoded.split("\\.");
+
+        byte[] otherKey = new byte[32];
+        rand.nextBytes(otherKey);
+
+        Assertions.assertFalse(JWSSerializer.read(encoded, HashCodec.HS256(otherKey)).isSuccess());
+        Assertions.assertFalse(JWSSerializer.read(parts[0] + ".e30." + parts[2], codec).isSuccess());
+        Assertions.assertFalse(JWSSerializer.read(parts[0] + ".not-json." + parts[2], codec).isSuccess());
+        Assertions.assertFalse(JWSSerializer.read(parts[0] + "." + parts[1] + ".!!", codec).isSuccess());
+        Assertions.assertFalse(JWSSerializer.read(encoded, KeySupplier.of(KeyCodec.A128KW(new byte[16]))).isSuccess());
+    }
+
 }
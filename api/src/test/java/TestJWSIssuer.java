@@ -0,0 +1,66 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.wallentines.jwt.*;
+import org.wallentines.mdcfg.ConfigSection;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class TestJWSIssuer {
+
+    private static HashCodec<byte[]> createCodec() {
+        Random rand = new Random();
+        byte[] key = new byte[32];
+        rand.nextBytes(key);
+        return HashCodec.HS256(key);
+    }
+
+    @Test
+    public void testIdentical() {
+
+        HashCodec<byte[]> codec = createCodec();
+        JWSIssuer issuer = new JWSIssuer(codec, "test");
+
+        JWTBuilder builder = new JWTBuilder()
+                .issuedBy("test")
+                .withClaim("sub", "user")
+                .expiresIn(60);
+
+        String expected = builder.signed(codec, "test").asString().getOrThrow();
+        Assertions.assertEquals(expected, issuer.issue(builder).getOrThrow());
+
+        JWT decoded = JWTReader.readAny(issuer.issue(builder).getOrThrow(), KeySupplier.of(codec)).getOrThrow();
+        Assertions.assertEquals("test", decoded.header().getString("kid"));
+        Assertions.assertEquals("user", decoded.getClaim("sub").asString());
+    }
+
+    @Test
+    public void testIssueAll() {
+
+        HashCodec<byte[]> codec = createCodec();
+        JWSIssuer issuer = new JWSIssuer(codec);
+
+        List<ConfigSection> payloads = new ArrayList<>();
+        for(int i = 0 ; i < 100 ; i++) {
+            payloads.add(new ConfigSection().with("index", i));
+        }
+
+        List<String> tokens = new ArrayList<>();
+        Assertions.assertEquals(100, issuer.issueAll(payloads, tokens::add).getOrThrow().intValue());
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        Assertions.assertEquals(100, issuer.issueAll(payloads, bos).getOrThrow().intValue());
+        String[] lines = bos.toString(StandardCharsets.US_ASCII).split("\n");
+        Assertions.assertEquals(100, lines.length);
+
+        for(int i = 0 ; i < 100 ; i++) {
+            Assertions.assertEquals(tokens.get(i), lines[i]);
+            JWT decoded = JWTReader.readAny(tokens.get(i), KeySupplier.of(codec)).getOrThrow();
+            Assertions.assertEquals(i, decoded.getClaim("index").asNumber().intValue());
+        }
+    }
+
+}
@@ -0,0 +1,123 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.wallentines.jwt.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+public class TestPackedKeyStore {
+
+    @Test
+    public void testPack() throws IOException, NoSuchAlgorithmException {
+
+        Path folder = Files.createTempDirectory("keys");
+        Path keyring = Files.createTempFile("keyring", ".bin");
+        folder.toFile().deleteOnExit();
+        keyring.toFile().deleteOnExit();
+
+        FileKeyStore source = new FileKeyStore(folder);
+        for(int i = 0 ; i < 1000 ; i++) {
+            byte[] key = new byte[32];
+            key[0] = (byte) i;
+            key[1] = (byte) (i >> 8);
+            source.setKey("tenant" + i, KeyType.HMAC, key);
+        }
+
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair pair = generator.generateKeyPair();
+        source.setKey("tenant0", KeyType.RSA_PUBLIC, pair.getPublic());
+
+        Assertions.assertEquals(1001, PackedKeyStore.pack(folder, keyring));
+        try(var files = Files.list(folder)) {
+            files.forEach(file -> file.toFile().deleteOnExit());
+        }
+
+        PackedKeyStore store = PackedKeyStore.open(keyring);
+        Assertions.assertEquals(1001, store.size());
+        for(int i = 0 ; i < 1000 ; i++) {
+            byte[] key = store.getKey("tenant" + i, KeyType.HMAC);
+            Assertions.assertNotNull(key);
+            Assertions.assertEquals(32, key.length);
+            Assertions.assertEquals((byte) i, key[0]);
+            Assertions.assertEquals((byte) (i >> 8), key[1]);
+        }
+
+        Assertions.assertEquals(pair.getPublic(), store.getKey("tenant0", KeyType.RSA_PUBLIC));
+        Assertions.assertNull(store.getKey("tenant1", KeyType.RSA_PUBLIC));
+        Assertions.assertNull(store.getKey("tenant1000", KeyType.HMAC));
+        Assertions.assertNull(store.getKey("tenant", KeyType.HMAC));
+
+        // The store is read-only
+        store.setKey("test", KeyType.HMAC, new byte[32]);
+        store.clearKey("tenant0", KeyType.HMAC);
+        Assertions.assertNull(store.getKey("test", KeyType.HMAC));
+        Assertions.assertNotNull(store.getKey("tenant0", KeyType.HMAC));
+    }
+
+    @Test
+    public void testInvalid() throws IOException {
+
+        Path file = Files.createTempFile("keyring", ".bin");
+        file.toFile().deleteOnExit();
+        Files.write(file, new byte[64]);
+
+        Assertions.assertThrows(IOException.class, () -> PackedKeyStore.open(file));
+    }
+
+    @Test
+    public void testCorrupted() throws IOException {
+
+        Path folder = Files.createTempDirectory("keys");
+        Path keyring = Files.createTempFile("keyring", ".bin");
+        folder.toFile().deleteOnExit();
+        keyring.toFile().deleteOnExit();
+
+        FileKeyStore source = new FileKeyStore(folder);
+        for(int i = 0 ; i < 10 ; i++) {
+            source.setKey("tenant" + i, KeyType.HMAC, new byte[32]);
+        }
+        PackedKeyStore.pack(folder, keyring);
+        try(var files = Files.list(folder)) {
+            files.forEach(file -> file.toFile().deleteOnExit());
+        }
+        byte[] data = Files.readAllBytes(keyring);
+        Assertions.assertEquals(10, PackedKeyStore.open(keyring).size());
+
+        // Truncated
+        Files.write(keyring, Arrays.copyOf(data, data.length - 8));
+        Assertions.assertThrows(IOException.class, () -> PackedKeyStore.open(keyring));
+
+        // Key length past the end of the file
+        byte[] corrupted = data.clone();
+        ByteBuffer.wrap(corrupted).putInt(corrupted.length - 36, Integer.MAX_VALUE);
+        Files.write(keyring, corrupted);
+        Assertions.assertThrows(IOException.class, () -> PackedKeyStore.open(keyring));
+
+        // Entry offset past the end of the file
+        corrupted = data.clone();
+        ByteBuffer buffer = ByteBuffer.wrap(corrupted);
+        for(int i = 0 ; i < buffer.getInt(12) ; i++) {
+            if(buffer.getInt(16 + i * 8 + 4) != 0) {
+                buffer.putInt(16 + i * 8 + 4, corrupted.length);
+                break;
+            }
+        }
+        Files.write(keyring, corrupted);
+        Assertions.assertThrows(IOException.class, () -> PackedKeyStore.open(keyring));
+
+        // No empty slot to end a lookup
+        corrupted = data.clone();
+        buffer = ByteBuffer.wrap(corrupted);
+        buffer.putInt(8, buffer.getInt(12));
+        Files.write(keyring, corrupted);
+        Assertions.assertThrows(IOException.class, () -> PackedKeyStore.open(keyring));
+    }
+
+}
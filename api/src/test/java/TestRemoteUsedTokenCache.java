@@ -0,0 +1,129 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.wallentines.jwt.*;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class TestRemoteUsedTokenCache {
+
+    private static JWT createToken(UUID id, long expiresIn) {
+        return new JWTBuilder()
+                .withClaim("jti", id.toString())
+                .expiresIn(expiresIn)
+                .unsecured();
+    }
+
+    @Test
+    public void testShared() throws IOException {
+
+        try(UsedTokenServer server = UsedTokenServer.start(new InetSocketAddress("127.0.0.1", 0));
+            RemoteUsedTokenCache first = new RemoteUsedTokenCache("jti", server.getAddress());
+            RemoteUsedTokenCache second = new RemoteUsedTokenCache("jti", server.getAddress())) {
+
+            JWT token = createToken(UUID.randomUUID(), 60);
+            Assertions.assertTrue(first.validate(token));
+            Assertions.assertFalse(second.validate(token));
+            Assertions.assertFalse(first.validate(token));
+            Assertions.assertTrue(second.validate(createToken(UUID.randomUUID(), 60)));
+
+            Assertions.assertFalse(first.validate(new JWTBuilder().expiresIn(60).unsecured()));
+            Assertions.assertEquals(2, server.getStore().size());
+        }
+    }
+
+    @Test
+    public void testPipelined() throws IOException {
+
+        try(UsedTokenServer server = UsedTokenServer.start(new InetSocketAddress("127.0.0.1", 0));
+            RemoteUsedTokenCache cache = new RemoteUsedTokenCache("jti", server.getAddress())) {
+
+            List<JWT> tokens = new ArrayList<>();
+            for(int i = 0 ; i < 5000 ; i++) {
+                tokens.add(createToken(UUID.randomUUID(), 60));
+            }
+
+            List<CompletableFuture<Boolean>> results = new ArrayList<>();
+            for(JWT token : tokens) {
+                results.add(cache.validateAsync(token));
+            }
+            for(JWT token : tokens) {
+                results.add(cache.validateAsync(token));
+            }
+
+            for(int i = 0 ; i < results.size() ; i++) {
+                Assertions.assertEquals(i < tokens.size(), results.get(i).join());
+            }
+        }
+    }
+
+    @Test
+    public void testVerifier() throws IOException {
+
+        try(UsedTokenServer server = UsedTokenServer.start(new InetSocketAddress("127.0.0.1", 0));
+            RemoteUsedTokenCache cache = new RemoteUsedTokenCache("jti", server.getAddress())) {
+
+            JWTVerifier verifier = new JWTVerifier().allowUnprotected().enforceSingleUse(cache);
+            JWT token = createToken(UUID.randomUUID(), 60);
+
+            Assertions.assertTrue(verifier.verify(token));
+            Assertions.assertFalse(verifier.verify(token));
+        }
+    }
+
+    @Test
+    public void testUnreachable() throws IOException {
+
+        InetSocketAddress address;
+        try(UsedTokenServer server = UsedTokenServer.start(new InetSocketAddress("127.0.0.1", 0))) {
+            address = server.getAddress();
+        }
+
+        try(RemoteUsedTokenCache cache = new RemoteUsedTokenCache("jti", address, Duration.ofSeconds(1))) {
+            Assertions.assertFalse(cache.validate(createToken(UUID.randomUUID(), 60)));
+        }
+    }
+
+    @Test
+    public void testUnresponsive() throws IOException {
+
+        // Accepts connections, but never reads or answers
+        List<Socket> accepted = new CopyOnWriteArrayList<>();
+        try(ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            Thread acceptThread = new Thread(() -> {
+                try {
+                    while(true) {
+                        accepted.add(server.accept());
+                    }
+                } catch (IOException ignored) {
+                    // Closed
+                }
+            });
+            acceptThread.setDaemon(true);
+            acceptThread.start();
+
+            InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getLocalPort());
+            try(RemoteUsedTokenCache cache = new RemoteUsedTokenCache("jti", address, Duration.ofMillis(300))) {
+                Assertions.assertFalse(cache.validate(createToken(UUID.randomUUID(), 60)));
+                Assertions.assertFalse(cache.validate(createToken(UUID.randomUUID(), 60)));
+            }
+
+            // The stuck connection was dropped, and the second request was sent on a new one
+            Assertions.assertEquals(2, accepted.size());
+        } finally {
+            for(Socket socket : accepted) {
+                socket.close();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,102 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.wallentines.jwt.*;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Random;
+
+public class TestTokenCache {
+
+    private static HashCodec<byte[]> createCodec() {
+        Random rand = new Random();
+        byte[] key = new byte[32];
+        rand.nextBytes(key);
+        return HashCodec.HS256(key);
+    }
+
+    @Test
+    public void testHit() {
+
+        HashCodec<byte[]> codec = createCodec();
+        TokenCache cache = new TokenCache(KeySupplier.of(codec), 100);
+
+        String token = new JWTBuilder()
+                .issuedBy("test")
+                .expiresIn(60)
+                .signed(codec)
+                .asString().getOrThrow();
+
+        JWT first = cache.read(token).getOrThrow();
+        JWT second = cache.read(token).getOrThrow();
+
+        Assertions.assertSame(first, second);
+        Assertions.assertEquals("test", second.getIssuer());
+        Assertions.assertEquals(new CacheStats(1, 1, 0), cache.getStats());
+    }
+
+    @Test
+    public void testInvalidNotCached() {
+
+        HashCodec<byte[]> codec = createCodec();
+        TokenCache cache = new TokenCache(KeySupplier.of(codec), 100);
+
+        String token = new JWTBuilder()
+                .expiresIn(60)
+                .signed(createCodec())
+                .asString().getOrThrow();
+
+        Assertions.assertFalse(cache.read(token).isSuccess());
+        Assertions.assertEquals(0, cache.size());
+
+        String noExpiry = new JWTBuilder()
+                .issuedBy("test")
+                .signed(codec)
+                .asString().getOrThrow();
+
+        Assertions.assertTrue(cache.read(noExpiry).isSuccess());
+        Assertions.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testExpiry() {
+
+        HashCodec<byte[]> codec = createCodec();
+        Instant now = Instant.now();
+
+        String token = new JWTBuilder()
+                .expiresAt(now.plusSeconds(10))
+                .signed(codec)
+                .asString().getOrThrow();
+
+        TokenCache cache = new TokenCache(KeySupplier.of(codec), 100, Clock.fixed(now, ZoneOffset.UTC));
+        cache.read(token).getOrThrow();
+        Assertions.assertNotNull(cache.get(token));
+
+        TokenCache later = new TokenCache(KeySupplier.of(codec), 100, Clock.offset(Clock.systemUTC(), Duration.ofSeconds(20)));
+        later.read(token).getOrThrow();
+        Assertions.assertNull(later.get(token));
+    }
+
+    @Test
+    public void testEviction() {
+
+        HashCodec<byte[]> codec = createCodec();
+        TokenCache cache = new TokenCache(KeySupplier.of(codec), 32);
+
+        for(int i = 0 ; i < 100 ; i++) {
+            String token = new JWTBuilder()
+                    .withClaim("idx", i)
+                    .expiresIn(60)
+                    .signed(codec)
+                    .asString().getOrThrow();
+            cache.read(token).getOrThrow();
+        }
+
+        Assertions.assertTrue(cache.size() <= 32);
+        Assertions.assertEquals(100 - cache.size(), cache.getStats().evictions());
+    }
+
+}
@@ -0,0 +1,72 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.wallentines.jwt.*;
+
+import java.util.Random;
+
+public class TestTokenTemplate {
+
+    private static HashCodec<byte[]> createCodec() {
+        Random rand = new Random();
+        byte[] key = new byte[32];
+        rand.nextBytes(key);
+        return HashCodec.HS256(key);
+    }
+
+    @Test
+    public void testIdentical() {
+
+        HashCodec<byte[]> codec = createCodec();
+        JWSIssuer issuer = new JWSIssuer(codec, "test");
+
+        TokenTemplate template = TokenTemplate.of(new JWTBuilder().issuedBy("test").withClaim("aud", "api"), "sub", "exp", "admin");
+        TokenTemplate.Writer writer = template.writer();
+
+        for(long i = -5 ; i < 1000 ; i += 7) {
+
+            String sub = i % 2 == 0 ? "user" + i : "us\"er\n" + i;
+            String expected = new JWTBuilder()
+                    .issuedBy("test")
+                    .withClaim("aud", "api")
+                    .withClaim("sub", sub)
+                    .withClaim("exp", i * 1000003L)
+                    .withClaim("admin", i % 3 == 0)
+                    .signed(codec, "test").asString().getOrThrow();
+
+            writer.reset().set("sub", sub).set("exp", i * 1000003L).set("admin", i % 3 == 0);
+            Assertions.assertEquals(expected, issuer.issue(writer));
+        }
+    }
+
+    @Test
+    public void testUnset() {
+
+        HashCodec<byte[]> codec = createCodec();
+        JWSIssuer issuer = new JWSIssuer(codec);
+
+        TokenTemplate template = TokenTemplate.of(new JWTBuilder(), "sub", "exp");
+        TokenTemplate.Writer writer = template.writer();
+
+        Assertions.assertEquals(new JWTBuilder().signed(codec, null).asString().getOrThrow(), issuer.issue(writer));
+
+        writer.set("exp", 12L);
+        String expected = new JWTBuilder().withClaim("exp", 12L).signed(codec, null).asString().getOrThrow();
+        Assertions.assertEquals(expected, issuer.issue(writer));
+
+        writer.set("sub", "user");
+        expected = new JWTBuilder().withClaim("sub", "user").withClaim("exp", 12L).signed(codec, null).asString().getOrThrow();
+        Assertions.assertEquals(expected, issuer.issue(writer));
+
+        JWT decoded = JWTReader.readAny(issuer.issue(writer), KeySupplier.of(codec)).getOrThrow();
+        Assertions.assertEquals("user", decoded.getClaim("sub").asString());
+    }
+
+    @Test
+    public void testInvalid() {
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> TokenTemplate.of(new JWTBuilder().withClaim("sub", "a"), "sub"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> TokenTemplate.of(new JWTBuilder(), "sub", "sub"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> TokenTemplate.of(new JWTBuilder(), "sub").writer().set("exp", 1L));
+    }
+
+}
@@ -0,0 +1,304 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.wallentines.jwt.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestUsedTokenCache {
+
+    private static JWT createToken(UUID id, long expiresIn) {
+        return new JWTBuilder()
+                .withClaim("jti", id.toString())
+                .expiresIn(expiresIn)
+                .unsecured();
+    }
+
+    @Test
+    public void testSingleUse() {
+        testSingleUse(new LocalUsedTokenCache("jti"));
+        testSingleUse(new LocalUsedTokenCache("jti", new CompactUsedTokenStore()));
+        testSingleUse(new LocalUsedTokenCache("jti", new BloomUsedTokenStore(1000, 0.001, Duration.ofSeconds(10))));
+    }
+
+    private void testSingleUse(UsedTokenCache cache) {
+
+        JWT token = createToken(UUID.randomUUID(), 60);
+
+        Assertions.assertTrue(cache.validate(token));
+        Assertions.assertFalse(cache.validate(token));
+        Assertions.assertTrue(cache.validate(createToken(UUID.randomUUID(), 60)));
+
+        Assertions.assertFalse(cache.validate(new JWTBuilder().expiresIn(60).unsecured()));
+        Assertions.assertFalse(cache.validate(new JWTBuilder().withClaim("jti", UUID.randomUUID().toString()).unsecured()));
+    }
+
+    @Test
+    public void testPurge() {
+        testPurge(new ConcurrentUsedTokenStore());
+        testPurge(new CompactUsedTokenStore());
+        testPurge(new BloomUsedTokenStore(1000, 0.001, Duration.ofSeconds(10)));
+    }
+
+    private void testPurge(UsedTokenStore store) {
+
+        MutableClock clock = new MutableClock();
+        LocalUsedTokenCache cache = new LocalUsedTokenCache("jti", clock, store);
+        JWT expired = createToken(UUID.randomUUID(), 10);
+        JWT valid = createToken(UUID.randomUUID(), 60);
+
+        Assertions.assertTrue(cache.validate(expired));
+        Assertions.assertTrue(cache.validate(valid));
+
+        clock.offset = Duration.ofSeconds(30);
+        cache.purge();
+
+        Assertions.assertEquals(1, cache.size());
+        Assertions.assertFalse(cache.validate(valid));
+    }
+
+    @Test
+    public void testConcurrent() {
+        testConcurrent(new LocalUsedTokenCache("jti"));
+        testConcurrent(new LocalUsedTokenCache("jti", new CompactUsedTokenStore()));
+        testConcurrent(new LocalUsedTokenCache("jti", new BloomUsedTokenStore(1000, 0.001, Duration.ofSeconds(10), true)));
+    }
+
+    private void testConcurrent(LocalUsedTokenCache cache) {
+
+        List<JWT> tokens = new ArrayList<>();
+        for(int i = 0 ; i < 100 ; i++) {
+            tokens.add(createToken(UUID.randomUUID(), 60));
+        }
+
+        AtomicInteger accepted = new AtomicInteger();
+        List<CompletableFuture<?>> futures = new ArrayList<>();
+        for(int i = 0 ; i < 8 ; i++) {
+            futures.add(CompletableFuture.runAsync(() -> {
+                for(JWT token : tokens) {
+                    if(cache.validate(token)) {
+                        accepted.incrementAndGet();
+                    }
+                }
+            }));
+        }
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).orTimeout(15000L, TimeUnit.MILLISECONDS).join();
+        Assertions.assertEquals(100, accepted.get());
+        Assertions.assertEquals(100, cache.size());
+    }
+
+    @Test
+    public void testCompactStore() {
+
+        CompactUsedTokenStore store = new CompactUsedTokenStore(16);
+        long now = Instant.now().getEpochSecond();
+
+        List<UUID> ids = new ArrayList<>();
+        for(int i = 0 ; i < 10000 ; i++) {
+            UUID id = UUID.randomUUID();
+            ids.add(id);
+            Assertions.assertTrue(store.markUsed(id, now + (i % 2 == 0 ? -10 : 10)));
+        }
+        Assertions.assertEquals(10000, store.size());
+
+        store.purge(now);
+        Assertions.assertEquals(5000, store.size());
+
+        for(int i = 0 ; i < ids.size() ; i++) {
+            Assertions.assertEquals(i % 2 == 0, store.markUsed(ids.get(i), now + 10));
+        }
+        Assertions.assertEquals(10000, store.size());
+    }
+
+    @Test
+    public void testCompactStoreBuckets() {
+
+        CompactUsedTokenStore store = new CompactUsedTokenStore(16);
+        long now = Instant.now().getEpochSecond();
+
+        // Entries in the same wheel bucket as an expired second are kept until their own second has passed
+        UUID soon = UUID.randomUUID();
+        UUID later = UUID.randomUUID();
+        UUID farFuture = UUID.randomUUID();
+        Assertions.assertTrue(store.markUsed(soon, now + 5));
+        Assertions.assertTrue(store.markUsed(later, now + 5 + 1024));
+        Assertions.assertTrue(store.markUsed(farFuture, Long.MAX_VALUE));
+
+        for(long second = now ; second <= now + 2100 ; second += 7) {
+            store.purge(second);
+            int expected = (second > now + 5 ? 0 : 1) + (second > now + 5 + 1024 ? 0 : 1) + 1;
+            Assertions.assertEquals(expected, store.size());
+        }
+        Assertions.assertFalse(store.markUsed(farFuture, Long.MAX_VALUE));
+
+        // An entry which was already expired when it was added is removed by the next purge
+        Assertions.assertTrue(store.markUsed(UUID.randomUUID(), now));
+        store.purge(now + 2101);
+        Assertions.assertEquals(1, store.size());
+
+        // Slots freed by a purge are reused without losing entries
+        List<UUID> ids = new ArrayList<>();
+        for(int round = 0 ; round < 20 ; round++) {
+            long expiresAt = now + 3000 + round;
+            for(int i = 0 ; i < 1000 ; i++) {
+                UUID id = UUID.randomUUID();
+                ids.add(id);
+                Assertions.assertTrue(store.markUsed(id, expiresAt));
+            }
+            store.purge(expiresAt);
+            Assertions.assertEquals(1001, store.size());
+        }
+        for(int i = ids.size() - 1000 ; i < ids.size() ; i++) {
+            Assertions.assertFalse(store.markUsed(ids.get(i), now + 4000));
+        }
+    }
+
+    @Test
+    public void testBloomStore() {
+
+        BloomUsedTokenStore store = new BloomUsedTokenStore(10000, 0.01, Duration.ofSeconds(60));
+        Assertions.assertEquals(0.01, store.getFalsePositiveRate());
+        Assertions.assertEquals(7, store.getHashCount());
+        Assertions.assertEquals(0, store.getMemoryUsage());
+
+        long now = Instant.now().getEpochSecond();
+        long expiresAt = now - Math.floorMod(now, 60) + 30;
+        for(int i = 0 ; i < 10000 ; i++) {
+            store.markUsed(UUID.randomUUID(), expiresAt);
+        }
+        Assertions.assertEquals(1, store.getGenerationCount());
+        Assertions.assertEquals(store.getBitsPerGeneration() / 8, store.getMemoryUsage());
+
+        int rejected = 0;
+        for(int i = 0 ; i < 1000 ; i++) {
+            if(!store.markUsed(UUID.randomUUID(), expiresAt)) {
+                rejected++;
+            }
+        }
+        Assertions.assertTrue(rejected < 30, "Too many false positives: " + rejected);
+
+        store.purge(expiresAt + 60);
+        Assertions.assertEquals(0, store.getGenerationCount());
+        Assertions.assertEquals(0, store.size());
+    }
+
+    @Test
+    public void testBloomStoreExact() {
+
+        BloomUsedTokenStore store = new BloomUsedTokenStore(100, 0.5, Duration.ofSeconds(60), true);
+        long now = Instant.now().getEpochSecond();
+
+        for(int i = 0 ; i < 10000 ; i++) {
+            Assertions.assertTrue(store.markUsed(UUID.randomUUID(), now));
+        }
+
+        UUID id = UUID.randomUUID();
+        Assertions.assertTrue(store.markUsed(id, now));
+        Assertions.assertFalse(store.markUsed(id, now));
+    }
+
+    @Test
+    public void testMappedStore() throws IOException {
+
+        Path file = Files.createTempFile("used_tokens", ".log");
+        Files.delete(file);
+        long now = Instant.now().getEpochSecond();
+
+        List<UUID> ids = new ArrayList<>();
+        try(MappedUsedTokenStore store = MappedUsedTokenStore.open(file)) {
+            for(int i = 0 ; i < 100000 ; i++) {
+                UUID id = UUID.randomUUID();
+                ids.add(id);
+                Assertions.assertTrue(store.markUsed(id, now + (i % 2 == 0 ? -10 : 60)));
+            }
+            Assertions.assertFalse(store.markUsed(ids.get(1), now + 60));
+        }
+
+        try(MappedUsedTokenStore store = MappedUsedTokenStore.open(file)) {
+            Assertions.assertEquals(50000, store.size());
+            for(int i = 0 ; i < ids.size() ; i++) {
+                Assertions.assertEquals(i % 2 == 0, store.markUsed(ids.get(i), now + 60));
+            }
+
+            store.purge(now);
+            Assertions.assertEquals(100000, store.size());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testMappedStoreHoles() throws IOException {
+
+        Path file = Files.createTempFile("used_tokens", ".log");
+        Files.delete(file);
+        long now = 1000;
+
+        List<UUID> ids = new ArrayList<>();
+        try(MappedUsedTokenStore store = MappedUsedTokenStore.open(file, () -> now)) {
+            Assertions.assertFalse(store.markUsed(UUID.randomUUID(), 0));
+            Assertions.assertFalse(store.markUsed(UUID.randomUUID(), -5));
+            for(int i = 0 ; i < 10 ; i++) {
+                UUID id = UUID.randomUUID();
+                ids.add(id);
+                Assertions.assertTrue(store.markUsed(id, now + 60));
+            }
+        }
+
+        // Simulate a slot which was reserved, but never written before a crash
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(32), 16 + 32 * 3);
+        }
+
+        try(MappedUsedTokenStore store = MappedUsedTokenStore.open(file, () -> now)) {
+            Assertions.assertEquals(9, store.size());
+            for(int i = 0 ; i < ids.size() ; i++) {
+                Assertions.assertEquals(i == 3, store.markUsed(ids.get(i), now + 60));
+            }
+            Assertions.assertTrue(store.markUsed(UUID.randomUUID(), now + 60));
+        }
+
+        try(MappedUsedTokenStore store = MappedUsedTokenStore.open(file, () -> now)) {
+            Assertions.assertEquals(11, store.size());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static class MutableClock extends Clock {
+
+        private volatile Duration offset = Duration.ZERO;
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.now().plus(offset);
+        }
+    }
+
+}
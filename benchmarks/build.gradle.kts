@@ -0,0 +1,18 @@
+plugins {
+    id("build.common")
+    alias(libs.plugins.jmh)
+}
+
+dependencies {
+
+    jmhImplementation(project(":api"))
+    jmhRuntimeOnly(libs.slf4j.simple)
+
+}
+
+jmh {
+    jmhVersion = libs.versions.jmh.get()
+    profilers = listOf("gc")
+    resultFormat = "JSON"
+    includes = listOf(providers.gradleProperty("jmhIncludes").getOrElse(".*"))
+}
@@ -0,0 +1,85 @@
+package org.wallentines.jwt.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.wallentines.jwt.*;
+import org.wallentines.mdcfg.ConfigSection;
+import org.wallentines.mdcfg.serializer.SerializeResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+// Each operation reads a whole batch, so multiply by batchSize for tokens per second
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class BatchBenchmark {
+
+    @Param({ "1", "2", "4", "8", "16", "32" })
+    public int parallelism;
+
+    @Param({ "10000" })
+    public int batchSize;
+
+    @Param({ "16" })
+    public int keyCount;
+
+    private ForkJoinPool pool;
+    private KeySupplier supplier;
+    private List<String> tokens;
+
+    @Setup
+    public void setup() {
+
+        Random random = new Random(0);
+        List<HashCodec<byte[]>> codecs = new ArrayList<>();
+        for(int i = 0 ; i < keyCount ; i++) {
+            byte[] key = new byte[32];
+            random.nextBytes(key);
+            codecs.add(HashCodec.HS256(key));
+        }
+
+        supplier = new KeySupplier() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <T> T getKey(ConfigSection joseHeader, KeyType<T> type) {
+                if(type != KeyType.HMAC) return null;
+                return (T) codecs.get(Integer.parseInt(joseHeader.getString("kid"))).getKey();
+            }
+        };
+
+        tokens = new ArrayList<>();
+        for(int i = 0 ; i < batchSize ; i++) {
+            int kid = i % keyCount;
+            tokens.add(PayloadSize.CLAIMS_5.builder().signed(codecs.get(kid), String.valueOf(kid)).asString().getOrThrow());
+        }
+
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public List<SerializeResult<JWT>> readAll() {
+        return JWTReader.readAll(tokens, supplier, pool);
+    }
+
+    @Benchmark
+    public int readSequential() {
+        int out = 0;
+        for(String token : tokens) {
+            if(JWTReader.readAny(token, supplier).isComplete()) out++;
+        }
+        return out;
+    }
+
+}
@@ -0,0 +1,55 @@
+package org.wallentines.jwt.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.wallentines.jwt.*;
+import org.wallentines.mdcfg.serializer.SerializeResult;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares JWE read throughput with and without cached Cipher instances, on every available core. Contention on
+ * provider lookup only shows up with many threads, so this should be run on a machine with 16 or more cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(Threads.MAX)
+public class CipherCacheBenchmark {
+
+    @Param({"true", "false"})
+    public boolean cipherCache;
+
+    @Param({"CLAIMS_5"})
+    public PayloadSize payload;
+
+    private KeySupplier supplier;
+    private String token;
+
+    @Setup
+    public void setup() {
+
+        CipherCache.setEnabled(cipherCache);
+
+        byte[] key = new byte[32];
+        new Random(0).nextBytes(key);
+
+        KeyCodec<?,?> keyCodec = KeyCodec.A256KW(key);
+        supplier = KeySupplier.of(keyCodec);
+        token = payload.builder().encrypted(keyCodec, CryptCodec.A256CBC_HS512()).asString().getOrThrow();
+    }
+
+    @TearDown
+    public void tearDown() {
+        CipherCache.setEnabled(true);
+    }
+
+    @Benchmark
+    public SerializeResult<JWT> read() {
+        return JWESerializer.read(token, supplier);
+    }
+
+}
@@ -0,0 +1,89 @@
+package org.wallentines.jwt.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.wallentines.jwt.*;
+import org.wallentines.mdcfg.serializer.SerializeResult;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyPairGenerator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class JWEBenchmark {
+
+    @Param({"RSA-OAEP", "A128KW", "A192KW", "A256KW", "dir"})
+    public String alg;
+
+    @Param({"A128CBC-HS256", "A192CBC-HS384", "A256CBC-HS512"})
+    public String enc;
+
+    @Param
+    public PayloadSize payload;
+
+    private KeySupplier supplier;
+    private JWESerializer serializer;
+    private JWT jwt;
+    private String token;
+
+    @Setup
+    public void setup() throws GeneralSecurityException {
+
+        Random random = new Random(0);
+
+        // The content key is fixed for the whole trial so that "dir" tokens can be read back with the same key.
+        CryptCodec<CryptCodec.CompoundKey> crypt = switch (enc) {
+            case "A128CBC-HS256" -> CryptCodec.A128CBC_HS256();
+            case "A192CBC-HS384" -> CryptCodec.A192CBC_HS384();
+            case "A256CBC-HS512" -> CryptCodec.A256CBC_HS512();
+            default -> throw new IllegalArgumentException("Unknown content encryption algorithm " + enc);
+        };
+
+        KeyCodec<?,?> keyCodec = switch (alg) {
+            case "RSA-OAEP" -> KeyCodec.RSA_OAEP(KeyPairGenerator.getInstance("RSA").generateKeyPair());
+            case "A128KW" -> KeyCodec.A128KW(randomBytes(random, 16));
+            case "A192KW" -> KeyCodec.A192KW(randomBytes(random, 24));
+            case "A256KW" -> KeyCodec.A256KW(randomBytes(random, 32));
+            case "dir" -> KeyCodec.direct();
+            default -> throw new IllegalArgumentException("Unknown key encryption algorithm " + alg);
+        };
+
+        supplier = keyCodec.getAlgorithm() == KeyCodec.ALG_DIRECT ? KeySupplier.of(crypt) : KeySupplier.of(keyCodec);
+        serializer = new JWESerializer(keyCodec, crypt);
+
+        jwt = payload.builder().encrypted(keyCodec, crypt);
+        token = serializer.writeString(jwt).getOrThrow();
+    }
+
+    private static byte[] randomBytes(Random random, int length) {
+        byte[] out = new byte[length];
+        random.nextBytes(out);
+        return out;
+    }
+
+    @Benchmark
+    public SerializeResult<String> writeString() {
+        return serializer.writeString(jwt);
+    }
+
+    @Benchmark
+    public SerializeResult<JWT> read() {
+        return JWESerializer.read(token, supplier);
+    }
+
+    @Benchmark
+    public SerializeResult<JWT> readAny() {
+        return JWTReader.readAny(token, supplier);
+    }
+
+
+    @Threads(Threads.MAX)
+    public static class MaxThreads extends JWEBenchmark { }
+
+}
@@ -0,0 +1,66 @@
+package org.wallentines.jwt.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.wallentines.jwt.*;
+import org.wallentines.mdcfg.serializer.SerializeResult;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class JWSBenchmark {
+
+    @Param({"HS256", "HS384", "HS512"})
+    public String alg;
+
+    @Param
+    public PayloadSize payload;
+
+    private HashCodec<byte[]> codec;
+    private KeySupplier supplier;
+    private JWSSerializer serializer;
+    private JWT jwt;
+    private String token;
+
+    @Setup
+    public void setup() {
+
+        byte[] key = new byte[64];
+        new Random(0).nextBytes(key);
+
+        @SuppressWarnings("unchecked")
+        HashCodec.Algorithm<byte[]> hashAlg = (HashCodec.Algorithm<byte[]>) HashCodec.ALGORITHMS.get(alg);
+        codec = hashAlg.createCodec(key);
+        supplier = KeySupplier.of(codec);
+        serializer = new JWSSerializer(codec);
+
+        jwt = payload.builder().signed(codec);
+        token = serializer.writeString(jwt).getOrThrow();
+    }
+
+    @Benchmark
+    public SerializeResult<String> writeString() {
+        return serializer.writeString(jwt);
+    }
+
+    @Benchmark
+    public SerializeResult<JWT> read() {
+        return JWSSerializer.read(token, supplier);
+    }
+
+    @Benchmark
+    public SerializeResult<JWT> readAny() {
+        return JWTReader.readAny(token, supplier);
+    }
+
+
+    @Threads(Threads.MAX)
+    public static class MaxThreads extends JWSBenchmark { }
+
+}
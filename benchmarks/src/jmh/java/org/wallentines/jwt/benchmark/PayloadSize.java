@@ -0,0 +1,47 @@
+package org.wallentines.jwt.benchmark;
+
+import org.wallentines.jwt.JWTBuilder;
+
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Payload shapes used by every benchmark. All payloads start with the same five registered claims; larger sizes add
+ * string claims until the minified JSON payload is roughly the given size.
+ */
+public enum PayloadSize {
+
+    CLAIMS_5(0),
+    KB_1(8),
+    KB_5(45);
+
+    private static final int PADDING_LENGTH = 100;
+
+    private final int paddingClaims;
+
+    PayloadSize(int paddingClaims) {
+        this.paddingClaims = paddingClaims;
+    }
+
+    public JWTBuilder builder() {
+
+        Random random = new Random(paddingClaims);
+        JWTBuilder builder = new JWTBuilder()
+                .issuedNow()
+                .issuedBy("benchmark")
+                .expiresIn(86400)
+                .withClaim("sub", "user")
+                .withClaim("jti", new UUID(random.nextLong(), random.nextLong()).toString());
+
+        for(int i = 0 ; i < paddingClaims ; i++) {
+            StringBuilder value = new StringBuilder(PADDING_LENGTH);
+            for(int j = 0 ; j < PADDING_LENGTH ; j++) {
+                value.append((char) ('a' + random.nextInt(26)));
+            }
+            builder.withClaim("c" + i, value.toString());
+        }
+
+        return builder;
+    }
+
+}
@@ -0,0 +1,56 @@
+package org.wallentines.jwt.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.wallentines.jwt.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class VerifierBenchmark {
+
+    @Param
+    public PayloadSize payload;
+
+    private KeySupplier supplier;
+    private JWTVerifier verifier;
+    private JWT jwt;
+    private String token;
+
+    @Setup
+    public void setup() {
+
+        byte[] key = new byte[32];
+        new Random(0).nextBytes(key);
+
+        HashCodec<byte[]> codec = HashCodec.HS256(key);
+        supplier = KeySupplier.of(codec);
+        verifier = new JWTVerifier()
+                .withClaim("iss", "benchmark")
+                .withClaim("sub", "user");
+
+        token = payload.builder().signed(codec).asString().getOrThrow();
+        jwt = JWTReader.readAny(token, supplier).getOrThrow();
+    }
+
+    @Benchmark
+    public boolean verify() {
+        return verifier.verify(jwt);
+    }
+
+    @Benchmark
+    public boolean readAndVerify() {
+        return verifier.verify(JWTReader.readAny(token, supplier).getOrThrow());
+    }
+
+
+    @Threads(Threads.MAX)
+    public static class MaxThreads extends VerifierBenchmark { }
+
+}
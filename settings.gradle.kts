@@ -1,4 +1,5 @@
 rootProject.name = "jwtutil"
 
 include("api")
-include("util")
\ No newline at end of file
+include("util")
+include("benchmarks")
\ No newline at end of file
@@ -5,6 +5,7 @@ import org.wallentines.mdcfg.codec.JSONCodec;
 import org.wallentines.mdcfg.serializer.ConfigContext;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.nio.file.Files;
 import java.nio.file.Path;
 
@@ -12,8 +13,20 @@ public class Main {
 
     public static void main(String[] args) {
 
+        if(args.length == 2 && args[0].equals("replay-server")) {
+            replayServer(Integer.parseInt(args[1]));
+            return;
+        }
+
+        if(args.length == 3 && args[0].equals("pack")) {
+            pack(Path.of(args[1]), Path.of(args[2]));
+            return;
+        }
+
         if(args.length != 3) {
             System.out.println("Usage: jwtutil <mode> <key> <data>");
+            System.out.println("       jwtutil replay-server <port>");
+            System.out.println("       jwtutil pack <key folder> <keyring>");
         }
 
         String mode = args[0];
@@ -46,6 +59,34 @@ public class Main {
     }
 
 
+    private static void replayServer(int port) {
+
+        UsedTokenServer server;
+        try {
+            server = UsedTokenServer.start(new InetSocketAddress(port));
+        } catch (IOException ex) {
+            throw new RuntimeException("Failed to start replay server", ex);
+        }
+        System.out.println("Listening on " + server.getAddress());
+
+        try {
+            Thread.currentThread().join();
+        } catch (InterruptedException ex) {
+            // Exit
+        }
+    }
+
+    private static void pack(Path keyFolder, Path output) {
+
+        int count;
+        try {
+            count = PackedKeyStore.pack(keyFolder, output);
+        } catch (IOException ex) {
+            throw new RuntimeException("Failed to pack key folder", ex);
+        }
+        System.out.println("Packed " + count + " keys into " + output);
+    }
+
     private static void decode(String tokenStr, byte[] keyData, KeyType<?> kt) {
         System.out.println(JSONCodec.readable()
                 .encodeToString(